@@ -1,10 +1,11 @@
 //=======================================================================
 /**
  * This is the Boid Class of the Plague! game. 
- * Within the game, we use the subclasses kingBoid and Locust. There is no 
+ * Within the game, we use the subclass kingBoid. There is no 
  * instance of the parent class, Boid.
  * Locusts exhibit flocking behavior inspired by the Boids model. They
- * also follow the kingBoid.
+ * also follow the kingBoid. Locusts are kept in the World's Swarm arrays
+ * instead of being Boid objects, the Locust class holds their rules.
  * The kingBoid does not exhibit flocking behavior. It moves by following
  * the mouse position.
  * @authors Eva Lau, Ethan Lebowitz, Karina Thanawala
@@ -64,71 +65,97 @@ import java.awt.geom.AffineTransform;
 
 //=======================================================================
 /**
- * Locust subclass
+ * Locust class
+ * Locusts are not objects, they are rows of the World's Swarm (positions and
+ * velocities in primitive arrays). This class holds the rules every locust
+ * follows, written as a flocking kernel over those arrays so a tick doesn't
+ * allocate anything per locust.
  *@param life life of the swarm. Changes number of locusts in the swarm. Affected by alive/dead status of tile occupied. 
  *@param decayRate increment at which life decreases over time
  *@param healRate increment at which life increases on live tiles
+ *@param SIGHT_RADIUS how far a locust can see other locusts, also the cell size of World.grid
  **/
-class Locust extends Boid{
+class Locust{
 	
+	static final double SIGHT_RADIUS = 25;
 	static double life = 100; 
-	double decayRate = .1; //speed at which life is lost 
-	double healRate = .9;
+	static double decayRate = .1; //speed at which life is lost 
+	static double healRate = .9;
     //=======================================================================
 
 
 
     //=======================================================================
     /**
-     *Locust constructor
-     * same as parent class constructor, except it increases the numBoids counter
-     * in the world when a locust is created. Resets life to 100 after it drops to 0.
+     * spawn() adds a locust to the world's swarm at the given position.
+     * Starting velocity is random; x and y velocity start between -5 and 5.
+     * Resets life to 100 after it drops to 0.
+     * The velocity comes from world.random, so spawn() must only be called from serial code.
      **/
-	public Locust(double X, double Y, World w){
-		super(X, Y, w);
-		world.numBoids++;
+	public static int spawn(World world, double X, double Y){
+		Random r = world.random;
 		if(life <= 0){life = 100;}
-	}// subclass Locust constructor
+		return world.swarm.add(X, Y, (r.nextDouble()-.5)*10, (r.nextDouble()-.5)*10);
+	}// spawn ()
     //=======================================================================
 
 
 
     //=======================================================================
     /**
-     * update() method calls flock() to govern locust movement based on 
-     * boid model rules.
-     * Changes position based on velocity.
-     * Increases locust life and decreases tile life if tile boid is on is alive.
-     * Decreases boid life if tile boid is on is dead.
+     * move() method changes the position of locust i based on its velocity and finds the tile
+     * it landed on. The velocity was already set for this tick by flock().
+     * Only touches locust i, so World.updateSwarm() can run it in parallel.
      **/
-    
-    public void	update(double time, Tile[][] map, ArrayList<Locust> boids, Boid kingBoid){
-	flock(boids, kingBoid);
-	position = position.add(velocity.times(time));
-	Tile tile = getTile(map);
-		reduceTileLife(tile);
-        updateBoidLife(tile);
-    }// update ()
+    public static void move(Swarm swarm, int i, double time, TileMap map){
+	swarm.x[i] += swarm.vx[i]*time;
+	swarm.y[i] += swarm.vy[i]*time;
+	swarm.tile[i] = map.indexAt(swarm.x[i], swarm.y[i]);
+    }// move ()
      //=======================================================================
 
 
 
+    //=======================================================================
+    /**
+     * applyTileEffects() method takes bites tenths of life from the tile locust i moved
+     * onto if it is alive and changes locust life based on the tile (see updateBoidLife()).
+     * bites and step are how much this tick counts for, see World.updateSwarm().
+     * These change shared state (tiles, the static life, the swarm), so
+     * World.updateSwarm() calls this serially in swarm order after every locust moved.
+     * Locusts spawned this tick haven't moved yet and have no tile (-1).
+     * Locusts off the map (TileMap.OFF_MAP) are on a mountain, they only decay.
+     **/
+    public static void applyTileEffects(World world, int i, int bites, double step){
+	int t = world.swarm.tile[i];
+	if(t == -1){
+	    return;
+	}
+	world.swarm.tile[i] = -1;
+	world.map.reduceLife(t, bites);
+	updateBoidLife(world, world.map.isAlive(t), step);
+    }// applyTileEffects ()
+    //=======================================================================
+
+
+
     //=======================================================================
     /**
      * updateBoidLife() method is used to change boid life based on the tile a boid is on.
      * If the tile is alive, boid life increases based on healRate.
      * If the tile is dead boid life decreases based on decayRate.
+     * Both are per tick at Main.FPS, step scales them to the length of this tick.
      * If life drops to zero, die() is called and a locust drops out of the swarm.
      **/
-	public void updateBoidLife(Tile tile){
-		if(tile.alive && life < 100){
-			life += this.healRate;
+	public static void updateBoidLife(World world, boolean tileAlive, double step){
+		if(tileAlive && life < 100){
+			life += healRate * step;
 		}
-		else if((!tile.alive) && life > 0){
-			life -= this.decayRate;
+		else if((!tileAlive) && life > 0){
+			life -= decayRate * step;
 		}
 		if(life <= 0){
-			die();
+			die(world);
 		}
 	}// updateBoidLife ()
 	//=======================================================================
@@ -137,14 +164,12 @@ class Locust extends Boid{
 
         //=======================================================================
         /**
-	 * die() method causes the numBoids counter to decrease by 1, removes the last 
-	 * locust to be added to the boids arraylist, and then resets life to 100 if 
-	 * there are any follower locusts remaining.
+	 * die() method removes the last locust to be added to the swarm, and then
+	 * resets life to 100 if there are any follower locusts remaining.
         **/
-	public void die(){
-		world.numBoids --;
-		world.boids.remove(world.numBoids);
-		if(world.numBoids > 0){
+	public static void die(World world){
+		world.swarm.removeLast();
+		if(world.swarm.count > 0){
 			life = 100;
 		}
 	}// die ()
@@ -154,140 +179,203 @@ class Locust extends Boid{
      //=======================================================================
     /**
      * neighborhood() method implements 3 basic boid rules, based on the "neighborhood"
-     * a given boid is in. Neighborhood is defined by other locusts that are both near to 
+     * locust i is in. Neighborhood is defined by other locusts that are both near to 
      * and in front of a given boid.
-     * Outputs one pair each time it is called, pair represents new velocity of myBoid based
-     * on boid rules. 
+     * Writes the new velocity of locust i based on boid rules to the swarm's back
+     * buffer (nextVx, nextVy). Only velocities from the front buffer are read.
      *
      * Boid rules: 1. Alignment, 2. Cohesion, 3. Separation
      * Inspired by pseudo-code here: 
      * https://gamedevelopment.tutsplus.com/tutorials/3-simple-rules-of-flocking-behaviors-alignment-cohesion-and-separation--gamedev-3444
      * Modified so neighborhood only includes other boids a boid "sees" based on this paper:
      * http://citeseerx.ist.psu.edu/viewdoc/download?doi=10.1.1.595.442&rep=rep1&type=pdf
+     *
+     * Candidate neighbors come from the grid, which has to be rebuilt for the
+     * current positions, so only the locusts in the cells around locust i are looked at.
+     * Distances are compared squared, sqrt(d) < r is the same test as d < r*r.
      **/
     
-    public Pair neighborhood(Boid myBoid, ArrayList<Locust> boids){
-
-	Pair vel = myBoid.velocity.normalizeVector();//velocity copy (yea, not a real copy)
-	Pair align = new Pair(0,0);//alignment
-	Pair centroid = new Pair(0,0);//cohesion (aka head towards neighborhood centroid, thus the var name)
-	Pair separate = new Pair(0,0);//separation
-	
+    public static void neighborhood(Swarm swarm, SpatialGrid grid, int i){
+	double[] x = swarm.x;
+	double[] y = swarm.y;
+	double[] vx = swarm.vx;
+	double[] vy = swarm.vy;
+	double myX = x[i];
+	double myY = y[i];
+
+	double mag = Math.sqrt(vx[i]*vx[i] + vy[i]*vy[i]);
+	double velX = unit(vx[i], mag);//unit velocity
+	double velY = unit(vy[i], mag);
+	double aheadX = myX + velX*SIGHT_RADIUS;//point the boid is looking at
+	double aheadY = myY + velY*SIGHT_RADIUS;
+	double sightSquared = SIGHT_RADIUS*SIGHT_RADIUS;
+
+	double alignX = 0, alignY = 0;//alignment
+	double centroidX = 0, centroidY = 0;//cohesion (aka head towards neighborhood centroid, thus the var name)
+	double separateX = 0, separateY = 0;//separation
 	int neighborCount  = 0;//used for normalization
-	Boid otherBoid = new Boid(0,0, world);//placeholder boid. assignement changes as it gets iterated over
-
-	for(int i = 0; i < boids.size(); i++){
-	    otherBoid = boids.get(i);
-	    
-	    if(otherBoid != myBoid){
-		if(distanceFrom(myBoid.position, otherBoid.position) < 25 && distanceFrom(myBoid.position.add(myBoid.velocity.normalizeVector().times(25)), otherBoid.position) < 25){
-		    //boids "see" boids that fall within 25 unit radius of them & that are in front of them 
-		    neighborCount++;
-	        
-		    
-		    align.x += otherBoid.velocity.x;
-		    align.y += otherBoid.velocity.y;
-		    
-		    centroid.x += otherBoid.position.x;
-		    centroid.y += otherBoid.position.y;
-
-		    separate.x += otherBoid.position.x - myBoid.position.x;
-		    separate.y += otherBoid.position.y - myBoid.position.y;
-        
-			
-		    
+
+	//anything the boid can see is within SIGHT_RADIUS, so only the 3x3 block of grid cells around it has to be checked
+	int cellX = grid.cellOf(myX);
+	int cellY = grid.cellOf(myY);
+	for(int gy = cellY - 1; gy <= cellY + 1; gy++){
+	    for(int gx = cellX - 1; gx <= cellX + 1; gx++){
+		int bucket = grid.bucket(gx, gy);
+		for(int e = grid.bucketStart(bucket); e < grid.bucketEnd(bucket); e++){
+		    if(!grid.inCell(e, gx, gy)){
+			continue;//another cell that hashed to the same bucket
+		    }
+		    int j = grid.boidAt(e);
+		    if(j == i){
+			continue;
+		    }
+		    double dx = x[j] - myX;
+		    double dy = y[j] - myY;
+		    double ax = x[j] - aheadX;
+		    double ay = y[j] - aheadY;
+		    if(dx*dx + dy*dy < sightSquared && ax*ax + ay*ay < sightSquared){
+			//boids "see" boids that fall within 25 unit radius of them & that are in front of them 
+			neighborCount++;
+			alignX += vx[j];
+			alignY += vy[j];
+			centroidX += x[j];
+			centroidY += y[j];
+			separateX += dx;
+			separateY += dy;
+		    }
 		}
 	    }
 	}
 	if(neighborCount == 0){
-	    return vel;//no change to velocity if boid has no neighbors
+	    swarm.nextVx[i] = velX;//no change to velocity if boid has no neighbors
+	    swarm.nextVy[i] = velY;
+	    return;
 	}
 
-	//normalize all pairs by neighborCount, then use normalizeVector() to convert to unit vectors
-	align.x /= neighborCount;
-	align.y /= neighborCount;
-	align = align.normalizeVector();//normalization prevents speed from radically increasing among other things
-	
-	
-	centroid.x  /= neighborCount;
-	centroid.y /= neighborCount;
-	Pair towardsCentroid = new Pair(centroid.x - myBoid.position.x, centroid.y - myBoid.position.y);//direction of centroid relative to boid
-	towardsCentroid = towardsCentroid.normalizeVector();
-
-	separate.x = -1*(separate.x/neighborCount);
-	separate.y = -1*(separate.y/neighborCount);
-	separate = separate.normalizeVector();
-
-	vel.x += ((align.x)*.6 + (towardsCentroid.x)*.8 + (separate.x)*4); //modify velocity based on weighted calculations
-	vel.y += ((align.y)*.6 + (towardsCentroid.y)*.8 + (separate.y)*4); //different weights = different boid behavior
+	//normalize all sums by neighborCount, then convert to unit vectors
+	//normalization prevents speed from radically increasing among other things
+	alignX /= neighborCount;
+	alignY /= neighborCount;
+	mag = Math.sqrt(alignX*alignX + alignY*alignY);
+	alignX = unit(alignX, mag);
+	alignY = unit(alignY, mag);
+
+	double towardsX = centroidX/neighborCount - myX;//direction of centroid relative to boid
+	double towardsY = centroidY/neighborCount - myY;
+	mag = Math.sqrt(towardsX*towardsX + towardsY*towardsY);
+	towardsX = unit(towardsX, mag);
+	towardsY = unit(towardsY, mag);
+
+	separateX = -1*(separateX/neighborCount);
+	separateY = -1*(separateY/neighborCount);
+	mag = Math.sqrt(separateX*separateX + separateY*separateY);
+	separateX = unit(separateX, mag);
+	separateY = unit(separateY, mag);
+
+	velX += (alignX*.6 + towardsX*.8 + separateX*4); //modify velocity based on weighted calculations
+	velY += (alignY*.6 + towardsY*.8 + separateY*4); //different weights = different boid behavior
 	
-	vel = vel.normalizeVector().times(50); //multiply or divide this to slow down or speed up
-	return vel;
-    }//neighborhoor ()
+	mag = Math.sqrt(velX*velX + velY*velY);
+	swarm.nextVx[i] = unit(velX, mag)*50; //multiply or divide this to slow down or speed up
+	swarm.nextVy[i] = unit(velY, mag)*50;
+    }//neighborhood ()
     //=======================================================================
 
     
     //=======================================================================
     /**
-     * flock() method changes velocity of every locust in an arraylist of locusts
-     *based on neighborhood () and follow () output.
+     * flock() method writes the new velocity of locust i to the swarm's back buffer
+     * based on neighborhood () and follow () output.
+     * It only reads the front buffer, so every locust's new velocity can be computed
+     * at the same time from the same velocities.
      **/
-    public void flock(ArrayList<Locust> boids, Boid kingBoid){
-	    for(int i = 0; i < boids.size(); i++){
-		boids.get(i).velocity = neighborhood(boids.get(i), boids).add(follow(kingBoid)).times(4);
-	    }
+    public static void flock(Swarm swarm, SpatialGrid grid, Boid kingBoid, int i){
+	    neighborhood(swarm, grid, i);
+	    follow(swarm, kingBoid, i);
+	    swarm.nextVx[i] *= 4;
+	    swarm.nextVy[i] *= 4;
     }//flock ()
     //=======================================================================
 
     
     //=======================================================================
     /**
-     * follow () method outputs pair corresponding to a locust's new velocity
-     * when it follows the position of the boid instance passed to the method.
+     * follow () method adds the velocity locust i gets from following the position
+     * of the boid passed to the method to the swarm's back buffer.
      * Locusts follow a point slightly behind the leader boid, for increased visibility
      * on screen. and also out of respect, probably.
      **/
-    public Pair follow(Boid kingBoid){
-	Pair behindKing = kingBoid.position;
+    public static void follow(Swarm swarm, Boid kingBoid, int i){
+	double myX = swarm.x[i];
+	double myY = swarm.y[i];
+	double behindX, behindY;
+	double mag;
 	if(kingBoid.velocity.x == 0 || kingBoid.velocity.y == 0){
-	    behindKing = new Pair(kingBoid.position.x - position.x, kingBoid.position.y - position.y);
-	    behindKing = behindKing.normalizeVector().times(15);
+	    behindX = kingBoid.position.x - myX;
+	    behindY = kingBoid.position.y - myY;
+	    mag = Math.sqrt(behindX*behindX + behindY*behindY);
+	    behindX = unit(behindX, mag)*15;
+	    behindY = unit(behindY, mag)*15;
 	}else{
-	    behindKing  =  kingBoid.velocity.normalizeVector().times(-15).add(kingBoid.position);
+	    mag = kingBoid.velocity.length();
+	    behindX = unit(kingBoid.velocity.x, mag)*(-15) + kingBoid.position.x;
+	    behindY = unit(kingBoid.velocity.y, mag)*(-15) + kingBoid.position.y;
 	}
 
-	Pair towardsKing = new Pair(behindKing.x - position.x, behindKing.y - position.y); 
-	towardsKing = towardsKing.normalizeVector().times(100);
-        return towardsKing;	
+	double towardsX = behindX - myX;
+	double towardsY = behindY - myY;
+	mag = Math.sqrt(towardsX*towardsX + towardsY*towardsY);
+	swarm.nextVx[i] += unit(towardsX, mag)*100;
+	swarm.nextVy[i] += unit(towardsY, mag)*100;
     }// follow ()
+    //=======================================================================
+
+
+    //=======================================================================
+    /**
+     * unit() returns one component of a unit vector, given the vector's magnitude.
+     * A zero length vector has no direction, so its components stay 0 instead of
+     * becoming NaN (which would stick to a locust forever). Same as Pair.normalizeInto().
+     **/
+    private static double unit(double component, double mag){
+	return (mag == 0) ? 0 : component/mag;
+    }// unit ()
+    //=======================================================================
     
 
-}// subclass Locust
+}// class Locust
 //=======================================================================
 
 
 //=======================================================================
 /**
  * KingBoid subclass
- *@param spriteLocation a string representing the filepath of the KingBoid's sprite.
+ *@param sprite index of the KingBoid's sprite in Sprites.
+ *@param previousPosition position at the start of the tick, for drawing frames between ticks
+ *@param rotations the sprite pre-rotated to every heading, made the first time the king is drawn
+ *@param frame the rotation the king was last drawn with
  **/
 class KingBoid extends Boid{
 	
-    String spriteLocation;
+    int sprite;
+    Pair previousPosition;
+    RotationCache rotations = null;
+    int frame = 0;
     //=======================================================================
 
 
     //=======================================================================
     /**
      * KingBoid constructor
-     * spriteLocation is set to the correct sprite filepath
-     * the image is loaded using loadImage() and spriteLocation
+     * sprite is set to the correct sprite
+     * the image is loaded using loadImage() and sprite
      * boidWidth and boidHeight are set based on image size, which helps rotate the 
      * kingboid sprite correctly.
      **/
 	public KingBoid(double X, double Y, World w){
 		super(X, Y, w);
-		spriteLocation = "sprites/king_crown_small.png";
+		previousPosition = new Pair(X, Y);
+		sprite = Sprites.KING_CROWN_SMALL;
 		Image image = loadImage();
 		boidWidth = image.getWidth(null);
                 boidHeight = image.getHeight(null);
@@ -299,13 +387,15 @@ class KingBoid extends Boid{
     /**
      * method update() changes position based on velocity, slows down boid over mountains
      * calls contain() to keep boid within world bounds.
+     * The position it moved from is kept in previousPosition.
      **/
-     public void update(double time, Tile[][] map, Pair Target){
-	    if(getTile(world.map).isMountain){
-		 	position = position.add(velocity.times(time/2.5));
+     public void update(double time, TileMap map, Pair Target){
+	    previousPosition.set(position.x, position.y);
+	    if(getTile(map).isMountain()){
+		 	position.addScaledInto(velocity, time/2.5, position);
 		}
 		 else{
-		 	position = position.add(velocity.times(time));
+		 	position.addScaledInto(velocity, time, position);
 		 }
 		contain();
      }// update ()
@@ -349,30 +439,38 @@ class KingBoid extends Boid{
      * https://docs.oracle.com/javase/7/docs/api/java/awt/geom/AffineTransform.html
      * 
      *For some reason figuring out how to get the transformation to work correctly was extremely difficult.
+     * The sprite faces heading, which is the velocity unless it is drawn from a RenderSnapshot.
+     * The rotations are drawn once, in RotationCache, so this picks the closest one and blits it
+     * around the same center the transformation used to rotate about.
+     * When the king stops it keeps facing the way it was going.
      **/
     protected void draw(Graphics g, Main mainInstance){
-		Image image = loadImage();
-		 Graphics2D g2D = (Graphics2D)g;
-		 AffineTransform backup = g2D.getTransform();
-		 AffineTransform a  = AffineTransform.getRotateInstance(Math.atan2(velocity.normalizeVector().y, velocity.normalizeVector().x)+.5*Math.PI,(.5*Main.WIDTH)+(.5*boidWidth) , (.5*Main.HEIGHT)+(.5*boidHeight));
-		 g2D.setTransform(a);
- 
-		 g2D.drawImage(loadImage(),(int)(.5*Main.WIDTH), (int)(.5*Main.HEIGHT), mainInstance);
-		 g2D.setTransform(backup);
-	        
+		draw(g, mainInstance, velocity);
+    }// draw ()
+	
+    protected void draw(Graphics g, Main mainInstance, Pair heading){
+		if(rotations == null){
+			rotations = RotationCache.forSprite(sprite);
+		}
+		frame = RotationCache.frameFor(heading.x, heading.y, frame);
+		rotations.draw(g, frame, (.5*Main.WIDTH)+(.5*boidWidth), (.5*Main.HEIGHT)+(.5*boidHeight), mainInstance);
     }// draw ()
      //=======================================================================
 
 
      //=======================================================================
     /**
-     * method contain() keeps the king within the dimensions of the world
+     * method contain() keeps the king within the dimensions of the world.
+     * An infinite world has none.
      **/
 	public void contain(){
+		if(world.map.infinite){
+			return;
+		}
 		double x = this.position.x;
 		double y = this.position.y;
-		double worldWidth = world.worldDimensions.x * Tile.width;
-		double worldHeight = world.worldDimensions.y * Tile.height;
+		double worldWidth = world.map.cols * Tile.width;
+		double worldHeight = world.map.rows * Tile.height;
 		if(x > worldWidth){this.position.x = worldWidth;}
 		if(x < 0){this.position.x = 0;}
 		if(y > worldHeight){this.position.y = worldHeight;}
@@ -384,16 +482,13 @@ class KingBoid extends Boid{
      //=======================================================================
 
     /**
-     * loadImage () loads and returns an image from a class param which is a string
-     * called spriteLocation, the string being a filepath to an image file. 
+     * loadImage () returns the image of the sprite the class param sprite
+     * refers to. Sprites decodes every image once, so this doesn't touch the disk.
      * Source:  http://zetcode.com/tutorials/javagamestutorial/movingsprites/
      **/
 	 public Image loadImage() {
         
-        ImageIcon ii = new ImageIcon(spriteLocation);
-        Image image = ii.getImage();   
-	        
-	return image;
+	return Sprites.get(sprite);
 	 }// loadImage ()
   
 }// subclass KingBoid
@@ -415,7 +510,6 @@ public class Boid{
      **/
     Pair position;
     Pair velocity;
-    Color color;
     World world;
     double boidWidth = 0;
     double boidHeight = 0;
@@ -426,68 +520,38 @@ public class Boid{
     /**
      * The Boid constructor. position coordinates and world are passed in.
      * Starting velocity is random; x and y velocity start between -5 and 5.
-     * Default color is black. 
+     * It comes from the world's random numbers when there is a world.
      **/
     public Boid(double X, double Y, World w){
-	    Random r = new Random();
+	    Random r = (w == null) ? new Random() : w.random;
 		this.position = new Pair(X, Y);
 		this.velocity = new Pair((r.nextDouble()-.5)*10,(r.nextDouble()-.5)*10);
-		color = Color.BLACK;
 		this.world = w;
     }// Parent class Boid Constructor
     //===================================================================
 
     
-    //===================================================================
-    /**
-     * method draw() draws a black circle with radius 7.5 at a boid's 
-     * position coords. 
-     **/
-    public void draw(Graphics g, World world){
-	Color c = g.getColor();
-	g.setColor(color);
-	Pair relativePosition = world.toDisplayCoords(position, world.kingBoid.position);
-	g.fillOval((int)(relativePosition.x), (int)(relativePosition.y),  15, 15);
-	g.setColor(c);
-    }// draw ()
-    //===================================================================
-
-
     //===================================================================
     /**
      * method getTile() returns the tile on the tile map that a boid is occupying
      **/
-    public Tile getTile(Tile[][] map){
-		double tileHeight = Tile.height;
-		double tileWidth = Tile.width;
-		int tilePosX = (int)Math.floor((position.x+(0.5*boidWidth)) / tileWidth);//boid's position x in tile map
-		int tilePosY = (int)Math.floor((position.y+(0.5*boidHeight)) / tileHeight);//boid's position x in tile map
-    
-		if(tilePosX < map[0].length && tilePosX >= 0 && tilePosY < map.length && tilePosY >= 0){
-			return map[tilePosY][tilePosX]; 
-		}
-		else{return map[0][0];}
+    public Tile getTile(TileMap map){
+		return getTile(map, position.x+(0.5*boidWidth), position.y+(0.5*boidHeight));
     } //getTile ()
-    //===================================================================
-
-
-    //===================================================================
+    
     /**
-     * method reduceTileLife() incrementally reduces a tiles life value
-     * also updates the tile sprite as life decreases to show life level.
+     * getTile() for a position. Off the map it is TileMap.OFF_MAP, which reads as a mountain.
+     * Locusts, which only exist in the swarm arrays, use TileMap.indexAt() and skip the view.
      **/
-	public void reduceTileLife(Tile tile){ //if tile is alive reduce its life
-		if(tile.alive && tile.life > 0){
-			tile.life -= .1;
-		}
-		tile.updateSprite();
-	}// reduceTileLife ()
+    public static Tile getTile(TileMap map, double x, double y){
+		return new Tile(map, map.indexAt(x, y));
+    } //getTile ()
     //===================================================================
 
     
     //===================================================================
     /**
-     * follow () method stub, overridden in locust and kingboid subclasses
+     * follow () method stub, overridden in the kingboid subclass
      **/
     public void follow(Pair targetPosition){}
     //===================================================================
@@ -497,13 +561,9 @@ public class Boid{
     /**
      * method distanceFrom() returns a double representing the euclidian distance
      * between two pairs, representing two positions on a coordinate plane.
-     * used in locust.neighborhood() to get boids within a certain radius.
      **/
     public double distanceFrom(Pair a, Pair b){
-	double x = Math.abs(a.x - b.x);
-	double y = Math.abs(a.y - b.y);
-	double distance = Math.sqrt(Math.pow(x, 2) + Math.pow(y, 2));
-	return distance;
+	return Math.sqrt(a.distanceSquared(b));
     }// distanceFrom ()
     
 		
@@ -0,0 +1,146 @@
+//=======================================================================
+/**
+ * This is the DistanceTransform Class of the Plague! game.
+ * World.generateChunk() uses it to find, for every tile, how far away the
+ * nearest mountain seed and the nearest alive seed are. Checking every seed
+ * from every tile took O(N^4) for an NxN map, this takes O(N^2).
+ *
+ * It is an exact Euclidean distance transform. First every column gets the
+ * distance to the nearest seed in that column (two sweeps, like a 1D
+ * chamfer). Then a pass along every row finds the lower envelope of the
+ * parabolas (q - p)^2 + f(p) over the column results. Distances are kept
+ * squared, so they are exact whole numbers. Column bands and rows don't
+ * depend on each other, so both passes are split across cores, unless the
+ * map is so small (a chunk) that splitting costs more than it saves.
+ *
+ * Reference: "Distance Transforms of Sampled Functions", Felzenszwalb and
+ * Huttenlocher, Theory of Computing 8 (2012).
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.util.stream.IntStream;
+//=======================================================================
+
+
+
+//=======================================================================
+class DistanceTransform{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param INF stands in for infinity, the squared distance to a seed type the map doesn't have
+	 *@param BAND number of columns one task sweeps in the column pass
+	 *@param PARALLEL_TILES smallest map split across cores
+	 **/
+	static final double INF = 1e20;
+	static final int BAND = 256;
+	static final int PARALLEL_TILES = 256 * 256;
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * squaredDistanceTo() returns the squared euclidian distance from every
+	 * cell of seededMap to the nearest cell that holds the given seed type,
+	 * or INF if there is none. Cells are measured by their indices, the same
+	 * way World.generateChunk() measures them.
+	 **/
+	public static double[][] squaredDistanceTo(int[][] seededMap, int type){
+		int rows = seededMap.length;
+		int cols = (rows == 0) ? 0 : seededMap[0].length;
+		double[][] distances = new double[rows][cols];
+
+		int bands = (cols + BAND - 1) / BAND;
+		parallel(IntStream.range(0, bands), rows * cols).forEach(band -> { //columns, a band of them at a time so rows are read in order
+			int from = band * BAND;
+			int to = Math.min(cols, from + BAND);
+			for(int j = from; j < to; j++){ //down
+				distances[0][j] = (seededMap[0][j] == type) ? 0 : INF;
+			}
+			for(int i = 1; i < rows; i++){
+				for(int j = from; j < to; j++){
+					distances[i][j] = (seededMap[i][j] == type) ? 0 : distances[i-1][j] + 1;
+				}
+			}
+			for(int i = rows - 2; i >= 0; i--){ //up
+				for(int j = from; j < to; j++){
+					distances[i][j] = Math.min(distances[i][j], distances[i+1][j] + 1);
+				}
+			}
+			for(int i = 0; i < rows; i++){ //square, INF stays INF
+				for(int j = from; j < to; j++){
+					double d = distances[i][j];
+					distances[i][j] = (d >= INF) ? INF : d*d;
+				}
+			}
+		});
+		parallel(IntStream.range(0, rows), rows * cols).forEach(i -> { //rows, over the column distances
+			double[] f = distances[i].clone();
+			transform(f, distances[i], cols);
+		});
+
+		return distances;
+	}// squaredDistanceTo ()
+
+	private static IntStream parallel(IntStream tasks, int tiles){
+		return (tiles >= PARALLEL_TILES) ? tasks.parallel() : tasks;
+	}// parallel ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * transform() is the 1D pass: d[q] = min over p of (q - p)^2 + f[p].
+	 * v holds the positions of the parabolas in the lower envelope and z the
+	 * boundaries between them.
+	 **/
+	private static void transform(double[] f, double[] d, int n){
+		if(n == 0){
+			return;
+		}
+		int[] v = new int[n];
+		double[] z = new double[n + 1];
+		int k = 0;
+		v[0] = 0;
+		z[0] = -INF;
+		z[1] = INF;
+		for(int q = 1; q < n; q++){
+			double s = intersect(f, q, v[k]);
+			while(s <= z[k]){ //the new parabola hides parabola v[k]
+				k--;
+				s = intersect(f, q, v[k]);
+			}
+			k++;
+			v[k] = q;
+			z[k] = s;
+			z[k + 1] = INF;
+		}
+		k = 0;
+		for(int q = 0; q < n; q++){
+			while(z[k + 1] < q){
+				k++;
+			}
+			double dist = q - v[k];
+			d[q] = Math.min(dist*dist + f[v[k]], INF);
+		}
+	}// transform ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * intersect() returns where the parabolas rooted at q and p cross.
+	 **/
+	private static double intersect(double[] f, int q, int p){
+		return ((f[q] + (double)q*q) - (f[p] + (double)p*p)) / (2.0*q - 2.0*p);
+	}// intersect ()
+	//=======================================================================
+
+}// class DistanceTransform
+//=======================================================================
@@ -0,0 +1,333 @@
+//=======================================================================
+/**
+ * This is the Headless Class of the Plague! game.
+ * It runs the simulation without a window, for load testing and profiling on
+ * machines with no display. There is no mouse, so the king is steered by a
+ * script that sweeps the map like a lawnmower: back and forth along every
+ * LANE_TILES-th row of tiles. The king is steered the same way the mouse
+ * steers it, through KingBoid.follow() with a pretend mouse position.
+ *
+ * It can also replay an InputTrace recorded by Main (or by Headless) instead,
+ * and record the scripted run to a trace.
+ *
+ * In an infinite world the lawnmower path covers the -size area starting at
+ * the origin, so runs of both kinds of world can be compared.
+ *
+ * World.updateBoids() is called as fast as it will go for the given number of
+ * ticks (or until the swarm is gone or the replay ends), each tick is 1/FPS
+ * seconds of game time like in Main. -realtime runs it at FPS instead. Then
+ * it prints ticks per second, the final swarm size and how many tiles were eaten.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+//=======================================================================
+
+
+
+//=======================================================================
+class Headless{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param LANE_TILES tiles between two lanes of the lawnmower path
+	 *@param KING_SPEED speed the script flies the king at, in world units per second
+	 *@param REACHED distance at which the king has reached a waypoint and turns to the next
+	 *@param world the world being simulated
+	 *@param waypoints the king's path, in world coordinates. It loops back to the start.
+	 *@param nextWaypoint index of the waypoint the king is flying to
+	 *@param replay input trace steering the king instead of the script, or null
+	 *@param recording input trace the king's steering is recorded to, or null
+	 *@param realtime true to run at Main.FPS ticks per second instead of as fast as possible
+	 **/
+	static final int LANE_TILES = 2;
+	static final double KING_SPEED = 400;
+	static final double REACHED = 50;
+	World world;
+	ArrayList<Pair> waypoints = new ArrayList<Pair>();
+	int nextWaypoint = 0;
+	InputTrace replay = null;
+	InputTrace recording = null;
+	boolean realtime = false;
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Headless constructor. Builds a world from the seed without a Main and
+	 * lays out the lawnmower path over its map, or over pathDimensions (in
+	 * tiles) of an infinite one.
+	 * To replay a trace, make the world from the trace's seed and size and set replay.
+	 * With a TileFile the map comes from the file, see World.
+	 **/
+	public Headless(Pair worldDimensions, Pair pathDimensions, long seed, int swarmThreads){
+		this(worldDimensions, pathDimensions, seed, swarmThreads, null);
+	}// Headless constructor
+
+	public Headless(Pair worldDimensions, Pair pathDimensions, long seed, int swarmThreads, TileFile tileFile){
+		world = new World(worldDimensions, null, seed, tileFile);
+		world.setSwarmThreads(swarmThreads);
+		int rows = world.map.infinite ? (int)pathDimensions.x : world.map.rows;
+		int cols = world.map.infinite ? (int)pathDimensions.y : world.map.cols;
+		boolean leftToRight = true;
+		for(int row = 1; row < rows - 1; row += LANE_TILES){ //the map edge is mountains, stay inside it
+			double y = (row + .5) * Tile.height;
+			double left = 1.5 * Tile.width;
+			double right = (cols - 1.5) * Tile.width;
+			waypoints.add(new Pair(leftToRight ? left : right, y));
+			waypoints.add(new Pair(leftToRight ? right : left, y));
+			leftToRight = !leftToRight;
+		}
+	}// Headless constructor
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * steer() points the king at the next waypoint, moving on to the one after
+	 * when it is close enough. The king flies towards a mouse position the
+	 * same way it does in Main, so this returns the position the mouse would
+	 * be at: the center of the screen plus the velocity we want. Snapped to
+	 * what a trace can hold, so a recording of it replays the same.
+	 **/
+	public Pair steer(){
+		Pair king = world.kingBoid.position;
+		Pair target = waypoints.get(nextWaypoint);
+		if(king.distanceSquared(target) < REACHED*REACHED){
+			nextWaypoint = (nextWaypoint + 1) % waypoints.size();
+			target = waypoints.get(nextWaypoint);
+		}
+		double dx = target.x - king.x;
+		double dy = target.y - king.y;
+		double distance = Math.sqrt(dx*dx + dy*dy);
+		double speed = Math.min(KING_SPEED, distance); //slow down near the waypoint instead of overshooting
+		if(distance > 0){
+			dx = dx / distance * speed;
+			dy = dy / distance * speed;
+		}
+		return InputTrace.snap(new Pair(.5*Main.WIDTH + dx, .5*Main.HEIGHT + dy));
+	}// steer ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * run() steers and updates the world for up to ticks ticks, stopping early
+	 * if every locust dies or the replay ends. Returns the number of ticks run.
+	 * Steering works like Main.steer().
+	 **/
+	public int run(int ticks) throws IOException{
+		int tickRate = (replay == null) ? Main.FPS : replay.tickRate;
+		double time = 1.0 / (double)tickRate;
+		long start = System.nanoTime();
+		int tick = 0;
+		while(tick < ticks && world.swarm.count > 0){
+			Pair m;
+			if(replay != null){
+				m = replay.next();
+				if(replay.ended){
+					break;
+				}
+			}
+			else{
+				m = steer();
+			}
+			if(m != null){
+				world.kingBoid.follow(m);
+			}
+			if(recording != null){
+				recording.record(m);
+			}
+			world.updateBoids(time);
+			tick++;
+			if(realtime){
+				long wait = start + (long)(tick * 1e9 / tickRate) - System.nanoTime();
+				if(wait > 0){
+					try{
+						Thread.sleep(wait / 1000000, (int)(wait % 1000000));
+					}
+					catch(InterruptedException e){}
+				}
+			}
+		}
+		return tick;
+	}// run ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Entry point for headless runs. Prints one line of results when done.
+	 *
+	 * Options:
+	 * -ticks N      number of ticks to run (default 3600, one minute of game time,
+	 *               or the whole trace when replaying)
+	 * -size W H     world size in tiles, W columns wide and H rows high (default 100 100, same as Main)
+	 * -infinite     run in an infinite world, the lawnmower path still covers -size
+	 * -parallel     update the swarm on every core
+	 * -threads N    update the swarm on N threads (1 = serial, the default)
+	 * -seed N       seed of the world (default 0). The same seed gives the same run.
+	 * -record FILE  record the scripted steering to FILE
+	 * -replay FILE  steer with the input recorded in FILE, its world size and seed are used
+	 * -realtime     run at FPS ticks per second instead of as fast as possible
+	 * -map FILE     keep the map in tile file FILE, made the first time, and keep the
+	 *               tiles eaten in it. An existing file's world size and seed are used.
+	 * -mapcopy FILE like -map, but the tiles eaten are forgotten at the end, so every
+	 *               run starts from the same map
+	 * -load FILE    go on from the game saved in FILE (see SaveGame), its world size and seed
+	 *               are used. The lawnmower path starts over.
+	 * -save FILE    save the game to FILE at the end
+	 * -autosave N   also save it to the -save FILE every N ticks while it runs
+	 **/
+	public static void main(String[] args) throws IOException{
+		System.setProperty("java.awt.headless", "true");
+		int ticks = -1;
+		String recordPath = null;
+		String replayPath = null;
+		String mapPath = null;
+		String loadPath = null;
+		String savePath = null;
+		int autosaveTicks = 0;
+		boolean persistentMap = false;
+		boolean realtime = false;
+		Pair worldDimensions = new Pair(100, 100);
+		boolean infinite = false;
+		int swarmThreads = 1;
+		long seed = 0;
+		for(int i = 0; i < args.length; i++){
+			if(args[i].equals("-ticks") && i+1 < args.length){
+				ticks = Integer.parseInt(args[++i]);
+			}
+			else if(args[i].equals("-size") && i+2 < args.length){
+				int width = Integer.parseInt(args[++i]);
+				worldDimensions = new Pair(Integer.parseInt(args[++i]), width); //World takes rows, then columns
+			}
+			else if(args[i].equals("-parallel")){
+				swarmThreads = Runtime.getRuntime().availableProcessors();
+			}
+			else if(args[i].equals("-threads") && i+1 < args.length){
+				swarmThreads = Integer.parseInt(args[++i]);
+			}
+			else if(args[i].equals("-seed") && i+1 < args.length){
+				seed = Long.parseLong(args[++i]);
+			}
+			else if(args[i].equals("-record") && i+1 < args.length){
+				recordPath = args[++i];
+			}
+			else if(args[i].equals("-replay") && i+1 < args.length){
+				replayPath = args[++i];
+			}
+			else if(args[i].equals("-realtime")){
+				realtime = true;
+			}
+			else if(args[i].equals("-infinite")){
+				infinite = true;
+			}
+			else if((args[i].equals("-map") || args[i].equals("-mapcopy")) && i+1 < args.length){
+				persistentMap = args[i].equals("-map");
+				mapPath = args[++i];
+			}
+			else if(args[i].equals("-load") && i+1 < args.length){
+				loadPath = args[++i];
+			}
+			else if(args[i].equals("-save") && i+1 < args.length){
+				savePath = args[++i];
+			}
+			else if(args[i].equals("-autosave") && i+1 < args.length){
+				autosaveTicks = Integer.parseInt(args[++i]);
+			}
+		}
+		Pair pathDimensions = worldDimensions;
+		if(infinite){
+			worldDimensions = new Pair(0, 0);
+		}
+
+		InputTrace replay = null;
+		if(replayPath != null){
+			replay = InputTrace.replay(new BufferedInputStream(new FileInputStream(replayPath)));
+			worldDimensions = new Pair(replay.worldRows, replay.worldCols);
+			seed = replay.seed;
+		}
+		SaveGame save = null;
+		if(loadPath != null){
+			if(replayPath != null || mapPath != null){
+				throw new IllegalArgumentException("-load can't be used with -replay or -map");
+			}
+			save = SaveGame.read(loadPath); //the save says which world it was played in
+			worldDimensions = new Pair(save.rows, save.cols);
+			seed = save.seed;
+		}
+		TileFile tileFile = null;
+		if(mapPath != null){
+			tileFile = TileFile.open(mapPath, persistentMap);
+			if(!tileFile.made){ //the file says which world it holds
+				worldDimensions = new Pair(tileFile.rows, tileFile.cols);
+				pathDimensions = worldDimensions;
+				seed = tileFile.seed;
+			}
+		}
+		if(ticks < 0){
+			ticks = (replay == null) ? 3600 : Integer.MAX_VALUE;
+		}
+		long loadStart = System.nanoTime();
+		Headless headless = new Headless(worldDimensions, pathDimensions, seed, swarmThreads, tileFile);
+		if(tileFile != null){
+			System.out.printf("map loaded from %s in %.3f s%n", mapPath, (System.nanoTime() - loadStart) / 1e9);
+		}
+		if(save != null){
+			long restoreStart = System.nanoTime();
+			save.restore(headless.world);
+			System.out.printf("game loaded from %s in %.3f s, tick %d%n", loadPath, (System.nanoTime() - restoreStart) / 1e9, headless.world.ticks);
+		}
+		if(savePath != null && autosaveTicks > 0){
+			headless.world.autosave = new SaveGame.Autosave(savePath, autosaveTicks);
+		}
+		headless.replay = replay;
+		headless.realtime = realtime;
+		if(recordPath != null){
+			headless.recording = InputTrace.record(new BufferedOutputStream(new FileOutputStream(recordPath)), headless.world, Main.FPS);
+		}
+		World world = headless.world;
+		long start = System.nanoTime();
+		int ran = headless.run(ticks);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		if(headless.recording != null){
+			headless.recording.close();
+		}
+		if(replay != null){
+			replay.close();
+		}
+		if(world.autosave != null){
+			world.autosave.finish();
+		}
+		if(savePath != null){
+			long saveStart = System.nanoTime();
+			SaveGame.save(world, savePath);
+			System.out.printf("game saved to %s in %.3f s%n", savePath, (System.nanoTime() - saveStart) / 1e9);
+		}
+		if(tileFile != null){
+			tileFile.close(world);
+		}
+
+		System.out.printf("seed %d, ticks %d in %.3f s (%.1f ticks/s), swarm %d, tiles eaten %d of %d%s%s%n",
+			seed, ran, seconds, ran / seconds, world.swarm.count,
+			world.deadTiles, world.aliveTiles + world.deadTiles, //every tile that isn't a mountain starts alive
+			world.map.infinite ? ", " + world.map.counted.size() + " chunks generated" : "",
+			(world.swarm.count == 0) ? ", swarm died" : "");
+		world.setSwarmThreads(1); //lets the pool's threads go
+	}// main (String[] args)
+	//=======================================================================
+
+}// class Headless
+//=======================================================================
@@ -0,0 +1,121 @@
+//=======================================================================
+/**
+ * This is the HudPanel Class of the Plague! game.
+ * It is the score panel in the upper left corner: percent of tiles alive,
+ * percent dead and the size of the swarm, each next to an icon.
+ *
+ * The panel only changes when one of those numbers does, which is rare next
+ * to how often frames are drawn, so it is drawn once into an image and that
+ * image is blitted every frame. It is drawn again only when the numbers
+ * differ from the ones it was drawn with. The icons are scaled once, when
+ * the class is loaded, instead of for every frame.
+ *
+ * A HudPanel belongs to one drawing thread.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+//=======================================================================
+
+
+
+//=======================================================================
+class HudPanel{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param BORDER width of the panel's border in pixels
+	 *@param X, Y position of the panel's top left corner on screen
+	 *@param WIDTH, HEIGHT size of the panel
+	 *@param BORDER_COLOR color of the border
+	 *@param BACKGROUND color inside the border
+	 *@param LIVE_ICON, DEAD_ICON, SWARM_ICON the icons, already scaled
+	 *@param font font of the numbers
+	 *@param image the panel as last drawn
+	 *@param percentAlive, swarmCount the numbers image was drawn with, -1 before it is drawn
+	 **/
+	static final int BORDER = 9;
+	static final int X = 20;
+	static final int Y = 20;
+	static final int WIDTH = 135;
+	static final int HEIGHT = 200;
+	static final Color BORDER_COLOR = new Color((float).9647,(float).7765,(float)0.0);
+	static final Color BACKGROUND = new Color((float).996,(float).976,(float).706);
+	static final Image LIVE_ICON = Main.scaleImage(Sprites.get(Sprites.LIVE2), 40, 40);
+	static final Image DEAD_ICON = Main.scaleImage(Sprites.get(Sprites.DEAD2), 40, 40);
+	static final Image SWARM_ICON = Main.scaleImage(Sprites.get(Sprites.LOCUST_SWARM), 35, 35);
+	Font font;
+	BufferedImage image = Sprites.createOpaqueImage(WIDTH, HEIGHT);
+	int percentAlive = -1;
+	int swarmCount = -1;
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * HudPanel constructor. font is the font the numbers are written in,
+	 * the font of whatever the panel is drawn on.
+	 **/
+	public HudPanel(Font font){
+		this.font = font;
+	}// HudPanel constructor
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * draw() draws the panel showing the given numbers, redrawing the
+	 * cached image first if they changed since the last time.
+	 **/
+	public void draw(Graphics g, int percentAlive, int swarmCount){
+		if(percentAlive != this.percentAlive || swarmCount != this.swarmCount){
+			render(percentAlive, swarmCount);
+		}
+		g.drawImage(image, X, Y, null);
+	}// draw ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * render() draws the panel into image, laid out the way Main drew it
+	 * straight onto the screen (positions are relative to the panel here).
+	 **/
+	private void render(int percentAlive, int swarmCount){
+		this.percentAlive = percentAlive;
+		this.swarmCount = swarmCount;
+		Graphics2D g = image.createGraphics();
+		//score panel color and dimensions
+		g.setColor(BORDER_COLOR);
+		g.fillRect(0, 0, WIDTH, HEIGHT);
+		g.setColor(BACKGROUND);
+		g.fillRect(BORDER, BORDER, WIDTH - (2*BORDER), HEIGHT - (2*BORDER));
+		//sprites representing a live tile, a dead tile, or a locust next to the corresponding info
+		g.drawImage(LIVE_ICON, 20, 20, null);
+		g.drawImage(DEAD_ICON, 20, 80, null);
+		g.drawImage(SWARM_ICON, 20, 140, null);
+		//% alive tiles, % dead tiles, & # locusts in current swarm
+		g.setColor(Color.BLACK);
+		if(font != null){
+			g.setFont(font);
+		}
+		g.drawString(String.valueOf(percentAlive)+"%", 80, 45);
+		g.drawString(String.valueOf(100-percentAlive)+"%", 80, 105);
+		g.drawString(String.valueOf(swarmCount), 80, 165);
+		g.dispose();
+	}// render ()
+	//=======================================================================
+
+}// class HudPanel
+//=======================================================================
@@ -0,0 +1,254 @@
+//=======================================================================
+/**
+ * This is the InputTrace Class of the Plague! game.
+ * It records the mouse input of a game, one entry per tick, so the game can
+ * be replayed exactly: a world made from the same seed, steered the same way
+ * on the same ticks, ends up the same (see World's seed). Replays are how
+ * slow moments players run into get reproduced, on screen or headless.
+ *
+ * The mouse only matters through KingBoid.follow(), and only the latest
+ * position before a tick is used, so that is all a trace keeps.
+ *
+ * File format (big endian, see DataOutputStream):
+ *   int     MAGIC
+ *   byte    VERSION
+ *   long    seed of the world
+ *   int     rows of the world in tiles, 0 for an infinite world
+ *   int     columns of the world in tiles, 0 for an infinite world
+ *   int     ticks per second the game ran at
+ * then one entry per tick, each starting with a varint tag:
+ *   NO_INPUT   the mouse didn't move since the last tick
+ *   MOVED      followed by the change in mouse x and y since the last MOVED
+ *              (from 0, 0 for the first one) as zigzag varints, in 1/SUBPIXELS
+ *              of a pixel
+ *   END        end of the trace, no entry for this tick
+ * An idle tick takes one byte, a small mouse move three to five.
+ * The real mouse only gives whole pixels, the fractions are for steering
+ * that doesn't come from a mouse (see Headless.steer()).
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+//=======================================================================
+
+
+
+//=======================================================================
+class InputTrace{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param MAGIC first four bytes of every trace, "LKTR"
+	 *@param VERSION version of the file format
+	 *@param NO_INPUT, MOVED, END tags of the entries
+	 *@param SUBPIXELS mouse positions are kept in 1/SUBPIXELS of a pixel
+	 *@param seed seed of the world the trace was recorded in
+	 *@param worldRows rows of the world in tiles, worldDimensions.x of World
+	 *@param worldCols columns of the world in tiles, worldDimensions.y of World
+	 *@param tickRate ticks per second the trace was recorded at
+	 *@param ticks number of ticks recorded or replayed so far
+	 *@param ended true once a replay has reached END, or a recording is closed
+	 *@param out where a recording is written, null for a replay
+	 *@param in where a replay is read from, null for a recording
+	 *@param mouseX x of the last mouse position recorded or replayed, in 1/SUBPIXELS of a pixel
+	 *@param mouseY y of the last mouse position recorded or replayed, in 1/SUBPIXELS of a pixel
+	 *@param hasMouse true once a mouse position has been recorded
+	 **/
+	static final int MAGIC = 0x4C4B5452;
+	static final int VERSION = 1;
+	static final int NO_INPUT = 0;
+	static final int MOVED = 1;
+	static final int END = 2;
+	static final int SUBPIXELS = 16;
+	long seed;
+	int worldRows;
+	int worldCols;
+	int tickRate;
+	int ticks = 0;
+	boolean ended = false;
+	DataOutputStream out;
+	DataInputStream in;
+	int mouseX = 0;
+	int mouseY = 0;
+	boolean hasMouse = false;
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * record() starts a trace of a game played in world, written to out.
+	 * replay() reads the header of a trace from in, the world to replay it in
+	 * is new World(new Pair(worldRows, worldCols), ..., seed).
+	 **/
+	public static InputTrace record(OutputStream out, World world, int tickRate) throws IOException{
+		InputTrace trace = new InputTrace();
+		trace.seed = world.seed;
+		trace.worldRows = (int)world.worldDimensions.x;
+		trace.worldCols = (int)world.worldDimensions.y;
+		trace.tickRate = tickRate;
+		trace.out = new DataOutputStream(out);
+		trace.out.writeInt(MAGIC);
+		trace.out.writeByte(VERSION);
+		trace.out.writeLong(trace.seed);
+		trace.out.writeInt(trace.worldRows);
+		trace.out.writeInt(trace.worldCols);
+		trace.out.writeInt(trace.tickRate);
+		return trace;
+	}// record ()
+
+	public static InputTrace replay(InputStream in) throws IOException{
+		InputTrace trace = new InputTrace();
+		trace.in = new DataInputStream(in);
+		if(trace.in.readInt() != MAGIC){
+			throw new IOException("Not an input trace");
+		}
+		int version = trace.in.readUnsignedByte();
+		if(version != VERSION){
+			throw new IOException("Input trace version " + version + " isn't supported, this game reads version " + VERSION);
+		}
+		trace.seed = trace.in.readLong();
+		trace.worldRows = trace.in.readInt();
+		trace.worldCols = trace.in.readInt();
+		trace.tickRate = trace.in.readInt();
+		return trace;
+	}// replay ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * record() writes the entry of one tick. mouse is the mouse position
+	 * given to KingBoid.follow() this tick, or null if there was none.
+	 * It must already be snapped (see snap()) for the replay to match.
+	 * Does nothing once the trace is closed.
+	 **/
+	public synchronized void record(Pair mouse) throws IOException{
+		if(ended){
+			return;
+		}
+		int x = (mouse == null) ? mouseX : (int)Math.round(mouse.x * SUBPIXELS);
+		int y = (mouse == null) ? mouseY : (int)Math.round(mouse.y * SUBPIXELS);
+		if(mouse == null || (hasMouse && x == mouseX && y == mouseY)){
+			writeVarint(NO_INPUT);
+		}
+		else{
+			writeVarint(MOVED);
+			writeVarint(zigzag(x - mouseX));
+			writeVarint(zigzag(y - mouseY));
+			mouseX = x;
+			mouseY = y;
+			hasMouse = true;
+		}
+		ticks++;
+	}// record ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * next() reads the entry of the next tick and returns the mouse position
+	 * to give KingBoid.follow(), or null if the mouse didn't move. At the end
+	 * of the trace it sets ended and returns null, don't run that tick.
+	 **/
+	public Pair next() throws IOException{
+		if(ended){
+			return null;
+		}
+		int tag = readVarint();
+		if(tag == END){
+			ended = true;
+			return null;
+		}
+		ticks++;
+		if(tag == NO_INPUT){
+			return null;
+		}
+		if(tag != MOVED){
+			throw new IOException("Bad entry in input trace at tick " + ticks);
+		}
+		mouseX += unzigzag(readVarint());
+		mouseY += unzigzag(readVarint());
+		return new Pair((double)mouseX / SUBPIXELS, (double)mouseY / SUBPIXELS);
+	}// next ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * snap() rounds a mouse position to what a trace holds, so steering with
+	 * it and with its replay is the same. Whole pixels don't change.
+	 **/
+	public static Pair snap(Pair mouse){
+		return new Pair(Math.round(mouse.x * SUBPIXELS) / (double)SUBPIXELS, Math.round(mouse.y * SUBPIXELS) / (double)SUBPIXELS);
+	}// snap ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * close() ends a recording (writing END) or a replay, and closes the stream.
+	 * Safe to call more than once, and from another thread than the one
+	 * recording (e.g. when the game window is closed).
+	 **/
+	public synchronized void close() throws IOException{
+		if(out != null){
+			if(!ended){
+				writeVarint(END);
+			}
+			out.close();
+		}
+		if(in != null){
+			in.close();
+		}
+		ended = true;
+	}// close ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Varints store 7 bits per byte, low bits first, the top bit of a byte is
+	 * set when another byte follows. zigzag() maps small negative numbers to
+	 * small positive ones (0, -1, 1, -2 ... become 0, 1, 2, 3 ...) so they stay short.
+	 **/
+	private void writeVarint(int value) throws IOException{
+		while((value & ~0x7F) != 0){
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}// writeVarint ()
+
+	private int readVarint() throws IOException{
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7){
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0){
+				return value;
+			}
+		}
+		throw new IOException("Bad varint in input trace at tick " + ticks);
+	}// readVarint ()
+
+	private static int zigzag(int n){
+		return (n << 1) ^ (n >> 31);
+	}// zigzag ()
+
+	private static int unzigzag(int n){
+		return (n >>> 1) ^ -(n & 1);
+	}// unzigzag ()
+	//=======================================================================
+
+}// class InputTrace
+//=======================================================================
@@ -7,7 +7,6 @@
  *
  * @authors Eva Lau, Ethan Lebowitz, Karina Thanawala
  * Code inspiration/source: KeyboardSpheres Lab Source Code
- * loadImage() source: http://zetcode.com/tutorials/javagamestutorial/movingsprites/
  * scaleImage() source: //https://stackoverflow.com/questions/6714045/how-to-resize-jlabel-imageicon
  * Format inspired by Professor Kaplan's CaesarCipher.java code format
  **/
@@ -41,6 +40,19 @@ import java.awt.RenderingHints;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.geom.Rectangle2D;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+import java.awt.DisplayMode;
+import java.awt.BorderLayout;
+import java.awt.Canvas;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.awt.GraphicsEnvironment;
 //=======================================================================
 
 
@@ -54,48 +66,245 @@ public class Main extends JPanel implements MouseMotionListener{
     /**
      *@param WIDTH width of the JPanel
      *@param HEIGHT height of the JPanel
-     *@param FPS frames per second, used for animation
-     *@param worldDimensions pair representing x and y dimensions of world in number of tiles
+     *@param FPS default tick rate and frame rate
+     *@param MAX_CATCH_UP most ticks run in a row to catch up before a frame is drawn.
+     *       Beyond that the game slows down instead of falling further behind.
+     *@param tickRate simulation ticks per second, set from the command line. Every tick is 1/tickRate seconds of game time.
+     *@param frameRate most frames drawn per second, set from the command line. 0 means the screen's refresh rate.
+     *@param worldDimensions pair representing x and y dimensions of world in number of tiles, 0 x 0 for an infinite world
+     *@param infinite true to play in an infinite world, set from the command line
      *@param world the world instance in which the game takes place
      *@param mousePosition the pair representing the x and y coords of the mouse, used to control the leader(king) boid
      *@param lost boolean representing whether losing conditions have been met
      *@param won boolean representing whether winning conditions have been met
+     *@param swarmThreads number of threads the swarm update runs on, set from the command line
+     *@param seed seed of the world, set from the command line. null picks a random one.
+     *@param recordPath file to record the mouse input to, set from the command line. null for no recording.
+     *@param replayPath file of recorded input to replay instead of using the mouse, set from the command line
+     *@param mapPath tile file the map is kept in, set from the command line. null to generate the map every game.
+     *@param loadPath saved game to play on from (see SaveGame), set from the command line. null for a new game.
+     *@param savePath file the game is autosaved to, set from the command line. null for no autosaves.
+     *@param AUTOSAVE_SECONDS seconds of game time between autosaves
+     *@param fast true to run a replay as fast as possible instead of at FPS
+     *@param recording the input trace being recorded, null when not recording
+     *@param replay the input trace being replayed, null when playing with the mouse
+     *@param appliedMouse the last mouse position given to the king
+     *@param alpha how far between the last tick and the next one the coming frame is, 0 to 1.
+     *       Written by the Runner, read when drawing.
+     *@param skippedTicks ticks the game couldn't keep up with and skipped
+     *@param active true to draw frames from the Runner with a BufferStrategy instead of repaint(), set from the command line
+     *@param REPORT_NANOS how often frame statistics are printed when active
+     *@param canvas what active frames are drawn on, null when not active
+     *@param framesDrawn frames drawn since the last report (active only)
+     *@param lateFrames frames that were shown more than a frame interval after they were due
+     *@param droppedFrames frames that were never drawn because the Runner was busy when they were due
+     *@param worstFrameNanos longest time drawing and showing one frame took since the last report
+     *@param hud the score panel, made by the first frame drawn
+     *@param MESSAGE_FONT font of the win and lose messages
      **/
     public static final int WIDTH = 1024;
     public static final int HEIGHT = 768;
     public static final int FPS = 60;
+    static final int MAX_CATCH_UP = 5;
+    static int tickRate = FPS;
+    static int frameRate = 0;
     public Pair worldDimensions = new Pair(100, 100);
+    static boolean infinite = false;
     World world;
-    public Pair mousePosition;
-    boolean lost = false;
-    boolean won = false;
+    public volatile Pair mousePosition;
+    volatile boolean lost = false;
+    volatile boolean won = false;
+    static int swarmThreads = 1;
+    static Long seed = null;
+    static String recordPath = null;
+    static String replayPath = null;
+    static String mapPath = null;
+    static String loadPath = null;
+    static String savePath = null;
+    static final int AUTOSAVE_SECONDS = 30;
+    static boolean fast = false;
+    InputTrace recording = null;
+    InputTrace replay = null;
+    Pair appliedMouse = null;
+    volatile double alpha = 1;
+    long skippedTicks = 0;
+    static boolean active = false;
+    static final long REPORT_NANOS = 10000000000L;
+    Canvas canvas = null;
+    long framesDrawn = 0;
+    long lateFrames = 0;
+    long droppedFrames = 0;
+    long worstFrameNanos = 0;
+    HudPanel hud = null;
+    static final Font MESSAGE_FONT = new Font("Monospaced", Font.BOLD, 175); //https://stackoverflow.com/questions/18249592/how-to-change-font-size-in-drawstring-java
     //=======================================================================
 
 
     //=======================================================================
     /**
-     * Calls update methods at regular increments of time based on FPS value,
-     * as long as losing or winning conditions have not been met.
+     * The game loop. Game time moves in fixed ticks of 1/tickRate seconds no
+     * matter how long a tick or a frame takes: real time that has passed is
+     * added to lag, and ticks are run until lag is less than a tick (at most
+     * MAX_CATCH_UP in a row). Frames are drawn at up to frameRate per second in
+     * between, with alpha saying how far into the next tick they are, so
+     * movement looks smooth even when ticks and frames don't line up.
+     * Sleeps until the next tick or frame is due.
+     * A fast replay runs ticks back to back instead.
+     *
+     * When active, the Runner draws the frames itself (see drawActiveFrame()),
+     * and counts frames that are late or dropped.
      **/
     class Runner implements Runnable{
 		public void run()
 		{
+			long tickNanos = 1000000000L / tickRate;
+			long frameNanos = 1000000000L / frameRate;
+			long previous = System.nanoTime();
+			long lag = 0;
+			long nextFrame = previous;
+			long nextReport = previous + REPORT_NANOS;
 			while(true){
-				if((!lost) && (!won)){
-					world.updateBoids(1.0 / (double)FPS); 
-					//world.updateTiles(1.0 / (double)FPS);
+				long now = System.nanoTime();
+				lag += now - previous;
+				previous = now;
+				boolean fastReplay = replay != null && fast && !replay.ended;
+				if(fastReplay){
+					lag = tickNanos;
+				}
+				
+				int ticks = 0;
+				while(lag >= tickNanos && ticks < MAX_CATCH_UP){
+					tick();
+					lag -= tickNanos;
+					ticks++;
+				}
+				if(lag >= tickNanos){ //too far behind, drop the rest instead of trying to catch up forever
+					skippedTicks += lag / tickNanos;
+					lag %= tickNanos;
+				}
+				alpha = fastReplay ? 1 : (double)lag / tickNanos;
+				
+				now = System.nanoTime();
+				if(now >= nextFrame){
+					if(canvas == null){
+						repaint();
+					}
+					else{
+						droppedFrames += (now - nextFrame) / frameNanos; //frames that were due while ticks ran
+						drawActiveFrame();
+						long shown = System.nanoTime();
+						worstFrameNanos = Math.max(worstFrameNanos, shown - now);
+						if(shown - nextFrame > frameNanos){
+							lateFrames++;
+						}
+						framesDrawn++;
+						now = shown;
+						if(now >= nextReport){
+							reportFrames();
+							nextReport = now + REPORT_NANOS;
+						}
+					}
+					nextFrame = Math.max(nextFrame + frameNanos, now); //don't bunch up frames after a stall
 				}
-				repaint();
-				try{
-					Thread.sleep(1000/FPS);
+				if(!fastReplay){
+					long nextTick = now + (tickNanos - lag);
+					LockSupport.parkNanos(Math.min(nextTick, nextFrame) - now);
 				}
-				catch(InterruptedException e){}
 			}
 
 		}
     
     }// end class Runner
 	
+    /**
+     * drawActiveFrame() draws a frame into the canvas's back buffer and shows
+     * it, redrawing if the buffer's contents were lost on the way (this can
+     * happen with video memory buffers).
+     **/
+    private void drawActiveFrame(){
+		if(!canvas.isDisplayable()){
+			return; //no window yet
+		}
+		BufferStrategy strategy = canvas.getBufferStrategy();
+		if(strategy == null){
+			canvas.createBufferStrategy(2);
+			strategy = canvas.getBufferStrategy();
+		}
+		do{
+			do{
+				Graphics g = strategy.getDrawGraphics();
+				drawFrame(g);
+				g.dispose();
+			}while(strategy.contentsRestored());
+			strategy.show();
+		}while(strategy.contentsLost());
+		Toolkit.getDefaultToolkit().sync(); //pushes the frame to the screen now on systems that buffer drawing (X11)
+    }// drawActiveFrame ()
+	
+    /**
+     * reportFrames() prints the frame statistics since the last report and starts new ones.
+     **/
+    private void reportFrames(){
+		System.out.printf("frames %d, late %d, dropped %d, worst %.1f ms, skipped ticks %d%n",
+			framesDrawn, lateFrames, droppedFrames, worstFrameNanos / 1e6, skippedTicks);
+		framesDrawn = 0;
+		lateFrames = 0;
+		droppedFrames = 0;
+		worstFrameNanos = 0;
+		skippedTicks = 0;
+    }// reportFrames ()
+	
+    /**
+     * tick() runs one tick of the game, as long as losing or winning
+     * conditions have not been met.
+     **/
+    private void tick(){
+		if((!lost) && (!won) && steer()){
+			world.updateBoids(1.0 / (double)tickRate); 
+			//world.updateTiles(1.0 / (double)FPS);
+		}
+    }// tick ()
+	
+    /**
+     * steer() gives the king the mouse position for the coming tick, from the
+     * replay when there is one, and records it when recording. Runs on the
+     * Runner's thread, so the king changes direction on a tick boundary and
+     * a replay steers it on the same ticks. Returns false when the replay is
+     * over, on every tick from then on.
+     **/
+    private boolean steer(){
+		Pair m = mousePosition;
+		try{
+			if(replay != null){
+				if(replay.ended){ //finished and reported on an earlier tick
+					return false;
+				}
+				m = replay.next();
+				if(replay.ended){
+					System.out.println("replay finished after " + replay.ticks + " ticks");
+					replay.close();
+					return false;
+				}
+			}
+			if(m != null && m != appliedMouse){
+				world.kingBoid.follow(m);
+				appliedMouse = m;
+			}
+			else{
+				m = null; //nothing new this tick
+			}
+			if(recording != null){
+				recording.record(m);
+			}
+		}
+		catch(IOException e){
+			System.out.println("input trace: " + e.getMessage());
+			replay = null;
+			recording = null;
+		}
+		return true;
+    }// steer ()
+	
     //=======================================================================
 
     
@@ -108,6 +317,8 @@ public class Main extends JPanel implements MouseMotionListener{
      * Player can seamlessly transition between moving the leader by moving the 
      * cursor and moving the leader by dragging the mouse. I don't know why people
      * would want to do this but it seems important for ~robustness~.
+     *
+     * The pair is handed to kingBoid.follow() by steer(), on the next tick.
      **/
 	@Override
     public void mouseMoved(MouseEvent e){
@@ -116,7 +327,6 @@ public class Main extends JPanel implements MouseMotionListener{
 	       
 		Pair m = new Pair((double)x, (double)y);
 		mousePosition = m;
-		world.kingBoid.follow(m);
 	}// mouseMoved ()
 	
     	@Override
@@ -126,7 +336,6 @@ public class Main extends JPanel implements MouseMotionListener{
 	       
 	    Pair m = new Pair((double)x, (double)y);
 	    mousePosition = m;
-	    world.kingBoid.follow(m);
 	}// mouseDragged
     //=======================================================================
 
@@ -167,9 +376,81 @@ public class Main extends JPanel implements MouseMotionListener{
      * starts the thread upon opening.
      **/
     public Main(){ 
-		world = new World(worldDimensions, this); 
+		try{
+			if(infinite){
+				worldDimensions = new Pair(0, 0);
+			}
+			SaveGame save = null;
+			if(loadPath != null){
+				if(replayPath != null || recordPath != null || mapPath != null){
+					throw new IllegalArgumentException("-load can't be used with -replay, -record or -map");
+				}
+				save = SaveGame.read(loadPath); //the save says which world it was played in
+				worldDimensions = new Pair(save.rows, save.cols);
+				seed = save.seed;
+			}
+			if(replayPath != null){ //the trace says which world it was played in
+				replay = InputTrace.replay(new BufferedInputStream(new FileInputStream(replayPath)));
+				worldDimensions = new Pair(replay.worldRows, replay.worldCols);
+				seed = replay.seed;
+				tickRate = replay.tickRate;
+			}
+			if(mapPath != null){
+				TileFile tileFile = TileFile.open(mapPath, true);
+				if(!tileFile.made){ //the file says which world it holds
+					worldDimensions = new Pair(tileFile.rows, tileFile.cols);
+					seed = tileFile.seed;
+				}
+				else if(seed == null){
+					seed = new Random().nextLong();
+				}
+				world = new World(worldDimensions, this, seed, tileFile);
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> { //the window closing ends the game, the tiles eaten are kept
+					try{
+						tileFile.close(world);
+					}
+					catch(IOException e){}
+				}));
+			}
+			else{
+				world = (seed == null) ? new World(worldDimensions, this) : new World(worldDimensions, this, seed); 
+			}
+			if(save != null){
+				save.restore(world);
+			}
+			if(savePath != null){
+				world.autosave = new SaveGame.Autosave(savePath, AUTOSAVE_SECONDS * tickRate);
+			}
+			if(recordPath != null){
+				recording = InputTrace.record(new BufferedOutputStream(new FileOutputStream(recordPath)), world, tickRate);
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> { //the window closing ends the game, and the recording
+					try{
+						recording.close();
+					}
+					catch(IOException e){}
+				}));
+			}
+		}
+		catch(IOException e){
+			throw new IllegalStateException("Could not open input trace, tile file or saved game: " + e.getMessage(), e);
+		}
+		world.setSwarmThreads(swarmThreads);
+		System.out.println("seed " + world.seed); //so a game can be played again with -seed
+		if(frameRate <= 0){
+			frameRate = refreshRate();
+		}
 		addMouseMotionListener(this);
 		this.setPreferredSize(new Dimension(WIDTH, HEIGHT));
+		if(active){ //frames go on a canvas that covers the panel
+			canvas = new Canvas();
+			canvas.setPreferredSize(new Dimension(WIDTH, HEIGHT));
+			canvas.setIgnoreRepaint(true);
+			canvas.addMouseMotionListener(this);
+			setLayout(new BorderLayout());
+			add(canvas, BorderLayout.CENTER);
+		}
+		world.snapshots = new RenderSnapshot.Exchange();
+		world.snapshots.publish(world, world.ticks); //something to draw before the first tick
 		Thread mainThread = new Thread(new Runner());
 		mainThread.start();
     }// Main () constructor
@@ -181,8 +462,67 @@ public class Main extends JPanel implements MouseMotionListener{
      * Entry point for program. Creates JFrame to display graphics, sets JFrame
      * to cease running when window is closed. Creates instance of Main and makes
      * graphics from Main visible in the JFrame.
+     *
+     * Options:
+     * -parallel     update the swarm on every core
+     * -threads N    update the swarm on N threads (1 = serial, the default)
+     * -seed N       make the world from seed N instead of a random seed
+     * -record FILE  record the mouse input to FILE
+     * -replay FILE  replay the input recorded in FILE instead of using the mouse
+     * -fast         run the replay as fast as possible
+     * -tickrate N   run N ticks per second (default FPS)
+     * -fps N        draw at most N frames per second (default the screen's refresh rate)
+     * -active       draw frames from the game loop instead of through repaint(), and
+     *               print how many frames were late or dropped every 10 seconds
+     * -infinite     play in a world with no edge, generated as the king flies over it
+     * -map FILE     keep the map in tile file FILE, made the first time. The tiles eaten stay
+     *               eaten, the next game with FILE goes on where this one stopped. An existing
+     *               file's world size and seed are used.
+     * -save FILE    save the game to FILE every AUTOSAVE_SECONDS, without pausing it
+     * -load FILE    play on from the game saved in FILE
      **/
     public static void main(String[] args){
+		for(int i = 0; i < args.length; i++){
+			if(args[i].equals("-parallel")){
+				swarmThreads = Runtime.getRuntime().availableProcessors();
+			}
+			else if(args[i].equals("-threads") && i+1 < args.length){
+				swarmThreads = Integer.parseInt(args[++i]);
+			}
+			else if(args[i].equals("-seed") && i+1 < args.length){
+				seed = Long.parseLong(args[++i]);
+			}
+			else if(args[i].equals("-record") && i+1 < args.length){
+				recordPath = args[++i];
+			}
+			else if(args[i].equals("-replay") && i+1 < args.length){
+				replayPath = args[++i];
+			}
+			else if(args[i].equals("-fast")){
+				fast = true;
+			}
+			else if(args[i].equals("-tickrate") && i+1 < args.length){
+				tickRate = Integer.parseInt(args[++i]);
+			}
+			else if(args[i].equals("-fps") && i+1 < args.length){
+				frameRate = Integer.parseInt(args[++i]);
+			}
+			else if(args[i].equals("-active")){
+				active = true;
+			}
+			else if(args[i].equals("-infinite")){
+				infinite = true;
+			}
+			else if(args[i].equals("-map") && i+1 < args.length){
+				mapPath = args[++i];
+			}
+			else if(args[i].equals("-save") && i+1 < args.length){
+				savePath = args[++i];
+			}
+			else if(args[i].equals("-load") && i+1 < args.length){
+				loadPath = args[++i];
+			}
+		}
 		JFrame frame = new JFrame("Plague!");
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		Main mainInstance = new Main();
@@ -195,16 +535,15 @@ public class Main extends JPanel implements MouseMotionListener{
 
     //=======================================================================
     /**
-     * Source:http://zetcode.com/tutorials/javagamestutorial/movingsprites/
-     * Method to load image from a png file using string representing the filepath.
+     * refreshRate() returns the screen's refresh rate, or FPS if it isn't known.
      **/
-    public static Image loadImage(String path) {
-        
-        ImageIcon ii = new ImageIcon(path);
-        Image image = ii.getImage(); 
-        
-		return image;
-    }// loadImage ()
+    static int refreshRate(){
+		if(GraphicsEnvironment.isHeadless()){
+			return FPS;
+		}
+		int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+		return (rate == DisplayMode.REFRESH_RATE_UNKNOWN) ? FPS : rate;
+    }// refreshRate ()
     //=======================================================================
 
 
@@ -230,30 +569,15 @@ public class Main extends JPanel implements MouseMotionListener{
     //=======================================================================
     /**
      * Draws the score information panel in the upper left corner.
+     * The numbers come from the snapshot being drawn. The panel is cached
+     * by HudPanel and only redrawn when they change.
      **/
 	
-	private void drawPanel(Graphics g){
-		int border = 9;
-		Pair dimensions = new Pair(135, 200);
-		Pair position = new Pair(20,20);
-
-		//score panel color and dimensions
-		g.setColor(new Color((float).9647,(float).7765,(float)0.0));
-		g.fillRect((int)position.x, (int)position.y, (int)dimensions.x, (int)dimensions.y);
-		g.setColor(new Color((float).996,(float).976,(float).706));
-		g.fillRect((int)position.x + border, (int)position.y + border, (int)dimensions.x - (2*border), (int)dimensions.y - (2*border));
-		//draws sprites representing a live tile, a dead tile, or a locust to be displayed next to corresponding info
-		Graphics2D g2d = (Graphics2D) g;
-    	g2d.drawImage(scaleImage(loadImage("sprites/live2.png"), 40, 40), (int)position.x + 20, (int)position.y + 20, this);
-		g2d.drawImage(scaleImage(loadImage("sprites/dead2.png"), 40, 40), (int)position.x + 20, (int)position.y + 80, this);
-		g2d.drawImage(scaleImage(loadImage("sprites/locust_swarm.png"), 35, 35), (int)position.x + 20, (int)position.y + 140, this);
-
-		//draws strings representing % alive tiles, % dead tiles, & # locusts in current swarm
-		g.setColor(Color.BLACK);
-		int percentAlive = world.getPercentAlive();
-		g.drawString(String.valueOf(percentAlive)+"%", (int)position.x + 80, (int)position.y + 45); // % alive
-		g.drawString(String.valueOf(100-percentAlive)+"%", (int)position.x + 80, (int)position.y + 105); // % dead
-		g.drawString(String.valueOf(world.numBoids), (int)position.x + 80, (int)position.y + 165); // % dead
+	private void drawPanel(Graphics g, RenderSnapshot snapshot){
+		if(hud == null){
+			hud = new HudPanel(getFont());
+		}
+		hud.draw(g, snapshot.percentAlive, snapshot.swarm.count);
 	}// drawPanel ()
     //=======================================================================
 
@@ -271,7 +595,7 @@ public class Main extends JPanel implements MouseMotionListener{
      **/
 	private void displayMessage(Graphics g, String message, Color color){
 		int border = 0;
-		Font font = new Font("Monospaced", Font.BOLD, 175); //https://stackoverflow.com/questions/18249592/how-to-change-font-size-in-drawstring-java
+		Font font = MESSAGE_FONT;
 		g.setFont(font);
 		FontMetrics metrics = g.getFontMetrics(font);
 		Rectangle2D stringBounds = metrics.getStringBounds(message, g);
@@ -291,18 +615,34 @@ public class Main extends JPanel implements MouseMotionListener{
 	 * Draws graphics as they update until winning or losing conditions are met.
 	 * Calls displayMessage() and stops updating graphics when winning or 
 	 * losing conditions are met.
+	 * When active the Runner draws the frames instead, on the canvas.
 	 **/
 
     public void paintComponent(Graphics g) {
 		
 		super.paintComponent(g);    	
 
-		world.drawTiles(g, this);
+		if(canvas == null){
+			drawFrame(g);
+		}
+    }
+	
+	/**
+	 * drawFrame() draws the whole game, used by paintComponent() and by drawActiveFrame().
+	 **/
+	private void drawFrame(Graphics g){
+		if(canvas != null){ //paintComponent() clears the panel, the back buffer has to be cleared here
+			g.setColor(getBackground());
+			g.fillRect(0, 0, WIDTH, HEIGHT);
+		}
+		double a = alpha;
+		RenderSnapshot snapshot = world.snapshots.acquire(); //the newest finished tick, the world itself may be mid tick
+		world.drawTiles(g, this, snapshot, a);
 		if(! (lost || won)){
-			world.drawBoids(g, this);
+			world.drawBoids(g, this, snapshot, a);
 		}
 		
-		drawPanel(g);
+		drawPanel(g, snapshot);
 		
 		if(lost){
 			displayMessage(g, "YOU LOST", Color.RED);
@@ -312,7 +652,7 @@ public class Main extends JPanel implements MouseMotionListener{
 			displayMessage(g, "YOU WON", Color.GREEN);
 		}
 		
-    }
+	}// drawFrame ()
 
     
 }
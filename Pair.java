@@ -4,6 +4,11 @@
  * Only change is the added functionality of the normalizeVector() method
  * which allowed us to treat pairs representing velocity like 
  * vectors (physics, not Java), and get a pair's unit vector.
+ *
+ * add(), divide(), times() and normalizeVector() return a new pair.
+ * The ...Into() methods write their result into the out pair instead (which
+ * can be the pair they are called on) and return it, so code that runs every
+ * tick or every frame can reuse pairs it keeps in fields instead of allocating.
  **/
 //===================================================================
 class Pair{
@@ -31,12 +36,63 @@ class Pair{
      * method normalizeVector() returns a pair representing the unit vector
      * of the pair it is called on. Used on boid velocities. 
      * It's all over the place in the boid class.
+     * A zero length pair has no direction, so (0, 0) is returned for it.
      **/
     public Pair normalizeVector(){
-	//mag = vector magnitude
-	double mag = Math.sqrt(Math.pow(x, 2) + Math.pow(y, 2));
-	//return new pair normalized by magnitude
-	return new Pair(x/mag, y/mag);
-	
+	return normalizeInto(new Pair(0, 0));
     }
+    //===================================================================
+
+
+    //===================================================================
+    /**
+     * In place versions of the methods above. out can be this pair.
+     **/
+    public Pair set(double newX, double newY){
+		x = newX;
+		y = newY;
+		return this;
+    }
+
+    public Pair addInto(Pair toAdd, Pair out){
+		return out.set(x + toAdd.x, y + toAdd.y);
+    }
+
+    public Pair scaleInto(double val, Pair out){
+		return out.set(x * val, y * val);
+    }
+
+    public Pair addScaledInto(Pair toAdd, double val, Pair out){ //this + toAdd*val
+		return out.set(x + toAdd.x * val, y + toAdd.y * val);
+    }
+
+    public Pair normalizeInto(Pair out){
+		double mag = length();
+		if(mag == 0){
+			return out.set(0, 0); //guard against dividing by zero for stationary boids
+		}
+		return out.set(x/mag, y/mag);
+    }
+    //===================================================================
+
+
+    //===================================================================
+    /**
+     * Lengths and distances. Compare squared values where possible, it saves
+     * the square root.
+     **/
+    public double lengthSquared(){
+		return x*x + y*y;
+    }
+
+    public double length(){
+		return Math.sqrt(x*x + y*y);
+    }
+
+    public double distanceSquared(Pair other){
+		double dx = x - other.x;
+		double dy = y - other.y;
+		return dx*dx + dy*dy;
+    }
+    //===================================================================
 }
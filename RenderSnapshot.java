@@ -0,0 +1,112 @@
+//=======================================================================
+/**
+ * This is the RenderSnapshot Class of the Plague! game.
+ * The simulation thread changes the swarm all through a tick (locusts move,
+ * spawn and die), so whatever draws the game (the EDT in paintComponent())
+ * must not read the swarm while a tick runs. Instead, at the end of every
+ * tick the simulation copies what drawing needs into a RenderSnapshot and
+ * publishes it, and frames are drawn from the newest published snapshot.
+ *
+ * Snapshots are triple buffered through an Exchange, without locks: the
+ * simulation fills its own snapshot and swaps it into the shared slot, the
+ * renderer swaps its old one out of the slot when the slot holds a newer
+ * tick. Neither ever waits for the other, and neither ever sees a snapshot
+ * the other is writing. Snapshots are reused, so publishing doesn't allocate
+ * once the arrays are big enough.
+ *
+ * Tiles aren't in the snapshot, TileLayer reads them directly: a tile only
+ * changes through its sprite index, and TileLayer's chunk versions catch
+ * those changes. The map can be a tick ahead of the locusts on screen.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.util.concurrent.atomic.AtomicReference;
+//=======================================================================
+
+
+
+//=======================================================================
+class RenderSnapshot{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param tick number of the tick this snapshot was taken after, -1 for none yet
+	 *@param swarm positions of the locusts, at the start and end of the tick (velocities aren't copied)
+	 *@param kingPosition position of the king
+	 *@param kingPrevious position of the king at the start of the tick
+	 *@param kingVelocity velocity of the king, the sprite is turned to face it
+	 *@param percentAlive percent of tiles left alive, see World.getPercentAlive()
+	 **/
+	volatile long tick = -1; //read by acquire() while the simulation may be writing it, volatile so it isn't torn
+	Swarm swarm = new Swarm(64);
+	Pair kingPosition = new Pair(0, 0);
+	Pair kingPrevious = new Pair(0, 0);
+	Pair kingVelocity = new Pair(0, 0);
+	int percentAlive = 100;
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * copyFrom() takes the snapshot of the world after the given tick.
+	 * Called on the simulation thread.
+	 **/
+	public void copyFrom(World world, long tick){
+		swarm.copyPositions(world.swarm);
+		KingBoid king = world.kingBoid;
+		kingPosition.set(king.position.x, king.position.y);
+		kingPrevious.set(king.previousPosition.x, king.previousPosition.y);
+		kingVelocity.set(king.velocity.x, king.velocity.y);
+		percentAlive = world.getPercentAlive();
+		this.tick = tick;
+	}// copyFrom ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Hands snapshots from the simulation thread to the renderer.
+	 * There are three snapshots: the one being written (back), the newest
+	 * finished one (in ready), and the one being drawn (front).
+	 * getAndSet() on ready is the only place they change hands.
+	 *@param ready the newest published snapshot, or the renderer's last one after it took the newest
+	 *@param back the snapshot the simulation thread writes, only it touches this field
+	 *@param front the snapshot the renderer draws, only it touches this field
+	 **/
+	static class Exchange{
+		AtomicReference<RenderSnapshot> ready = new AtomicReference<RenderSnapshot>(new RenderSnapshot());
+		RenderSnapshot back = new RenderSnapshot();
+		RenderSnapshot front = new RenderSnapshot();
+
+		/**
+		 * publish() snapshots the world after the given tick and makes it the
+		 * newest one. Simulation thread only.
+		 **/
+		public void publish(World world, long tick){
+			back.copyFrom(world, tick);
+			back = ready.getAndSet(back);
+		}// publish ()
+
+		/**
+		 * acquire() returns the newest published snapshot, which is the
+		 * renderer's until the next acquire(). Renderer thread only.
+		 * The tick check stops the renderer swapping back the older snapshot
+		 * it left in ready last time.
+		 **/
+		public RenderSnapshot acquire(){
+			if(ready.get().tick > front.tick){
+				front = ready.getAndSet(front);
+			}
+			return front;
+		}// acquire ()
+	}// class Exchange
+	//=======================================================================
+
+}// class RenderSnapshot
+//=======================================================================
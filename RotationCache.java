@@ -0,0 +1,112 @@
+//=======================================================================
+/**
+ * This is the RotationCache Class of the Plague! game.
+ * It holds a sprite pre-rotated to HEADINGS evenly spaced directions, so a
+ * sprite that turns to face where it is flying is drawn with one plain blit
+ * of the nearest frame instead of setting up a rotation every frame.
+ *
+ * Sprites are drawn facing up, frame 0 is the sprite as it is and frame k is
+ * turned k * 360/HEADINGS degrees clockwise. Frames are square and centered
+ * on the sprite's center, big enough that no corner is cut off.
+ *
+ * forSprite() keeps one cache per sprite, so anything drawing a turning
+ * sprite (the king now, locusts if they get directional sprites) shares the
+ * frames. The heading to draw with is kept by whoever draws, see frameFor().
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+//=======================================================================
+
+
+
+//=======================================================================
+class RotationCache{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param HEADINGS number of directions a sprite is pre-rotated to
+	 *@param caches cache of each sprite, by sprite index, made when first asked for
+	 *@param frames the sprite turned to each heading
+	 *@param size width and height of every frame
+	 **/
+	static final int HEADINGS = 64;
+	static RotationCache[] caches = new RotationCache[Sprites.FILES.length];
+	BufferedImage[] frames = new BufferedImage[HEADINGS];
+	int size;
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * forSprite() returns the cache of the sprite with the given index
+	 * (see Sprites), making it the first time.
+	 **/
+	public static synchronized RotationCache forSprite(int sprite){
+		if(caches[sprite] == null){
+			caches[sprite] = new RotationCache(Sprites.get(sprite));
+		}
+		return caches[sprite];
+	}// forSprite ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * RotationCache constructor. Draws the sprite turned to every heading,
+	 * with bilinear filtering since this only happens once.
+	 **/
+	public RotationCache(BufferedImage sprite){
+		int w = sprite.getWidth();
+		int h = sprite.getHeight();
+		size = (int)Math.ceil(Math.sqrt(w*w + h*h));
+		for(int k = 0; k < HEADINGS; k++){
+			frames[k] = Sprites.createImage(size, size);
+			Graphics2D g = frames[k].createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.rotate(k * 2 * Math.PI / HEADINGS, size / 2.0, size / 2.0);
+			g.drawImage(sprite, (size - w) / 2, (size - h) / 2, null);
+			g.dispose();
+		}
+	}// RotationCache constructor
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * frameFor() returns the frame facing along (dx, dy), for example a
+	 * velocity. A zero vector has no direction, so the previous frame is
+	 * returned for it and the sprite keeps facing the way it was.
+	 **/
+	public static int frameFor(double dx, double dy, int previousFrame){
+		if(dx == 0 && dy == 0){
+			return previousFrame;
+		}
+		double angle = Math.atan2(dy, dx) + .5*Math.PI; //atan2 is 0 facing right, the sprites face up
+		int frame = (int)Math.round(angle / (2 * Math.PI) * HEADINGS);
+		return Math.floorMod(frame, HEADINGS);
+	}// frameFor ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * draw() draws a frame with its center at (centerX, centerY).
+	 **/
+	public void draw(Graphics g, int frame, double centerX, double centerY, ImageObserver observer){
+		g.drawImage(frames[frame], (int)Math.round(centerX - size / 2.0), (int)Math.round(centerY - size / 2.0), observer);
+	}// draw ()
+	//=======================================================================
+
+}// class RotationCache
+//=======================================================================
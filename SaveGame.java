@@ -0,0 +1,661 @@
+//=======================================================================
+/**
+ * This is the SaveGame Class of the Plague! game.
+ * It saves everything a game is made of to a file, and puts it back in a
+ * world made from the same seed: the swarm, the king, the locusts' life,
+ * the world's random numbers and every tile that changed. A loaded game goes
+ * on exactly the way the saved one would have.
+ *
+ * Tiles are saved a chunk (see TileMap) at a time, and only the chunks that
+ * aren't the way they were generated: the same seed makes the rest again.
+ * A saved chunk is written against the chunk as generated:
+ *   life    runs of tiles with the same life as generated, each followed by
+ *           the difference of the next tile (locusts eat a tile down a
+ *           little at a time, so most differences are a few tenths)
+ *   state   2 bits a tile: ALIVE_STATE, MOUNTAIN_STATE, DEAD1_STATE or
+ *           DEAD2_STATE. The sprite follows from the state and the life.
+ * The swarm is written as its arrays, one after the other.
+ *
+ * Saving doesn't stop the game. capture() copies the small things (the
+ * swarm, the king, ...) and freezes the map (see TileMap.freeze()): changed
+ * chunks are copied a few per tick after that, or right before a tick changes
+ * them. Then a background thread compares them to freshly generated chunks
+ * and writes the file. Autosave does that every so many ticks.
+ *
+ * File format (big endian, numbers marked varint are written as in InputTrace):
+ *   int     MAGIC
+ *   int     VERSION
+ *   long    seed of the world
+ *   int     rows, cols   size of the map in tiles, 0 0 for an infinite world
+ *   long    ticks run
+ *   int     length, then the world's Random (java.io serialization, the only
+ *           way to get at its state)
+ *   double  king x, y, previous x, y, velocity x, y
+ *   double  Locust.life, World.biteCarry
+ *   int     alive, dead and mountain tiles (see World)
+ *   int     locusts, then their x, y, prevX, prevY, vx and vy (see Swarm),
+ *           an array of doubles each
+ *   int     chunks counted into the tile counts, then their keys (see TileMap.key()).
+ *           Infinite worlds only, always 0 for a bounded one.
+ *   int     saved chunks, then for each: varint (zigzag) chunk row and column,
+ *           the life runs (varint run, varint (zigzag) difference, ... until
+ *           TileMap.CHUNK_AREA tiles are covered) and CHUNK_AREA/4 bytes of states.
+ * A file is written next to the save and renamed over it when it is complete,
+ * so a game stopped half way through saving keeps its last save.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+//=======================================================================
+
+
+
+//=======================================================================
+class SaveGame{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param MAGIC first four bytes of every save, "LKSV"
+	 *@param VERSION version of the save format
+	 *@param BUFFER_BYTES size of the buffer between a save and its file
+	 *@param COPY_BUDGET frozen chunks copied per tick while saving, see copyTiles()
+	 *@param ALIVE_STATE, MOUNTAIN_STATE, DEAD1_STATE, DEAD2_STATE what a tile can be, see the class comment
+	 *@param writers the background thread writing saves, shared by every game
+	 *@param world the world being saved (null for a save read from a file)
+	 *@param seed, rows, cols the world's seed and size in tiles
+	 *@param ticks the world's ticks
+	 *@param random the world's Random, serialized
+	 *@param king the king's x, y, previous x, y and velocity x, y
+	 *@param locustLife Locust.life
+	 *@param biteCarry the world's biteCarry
+	 *@param alive, dead, mountain the world's tile counts
+	 *@param count number of locusts
+	 *@param x, y, prevX, prevY, vx, vy the swarm's arrays, count long
+	 *@param counted chunks counted into the tile counts (infinite worlds)
+	 *@param tiles the changed chunks, once copyTiles() copied them all
+	 *@param chunkKeys, lifeChanges, states the saved chunks read from a file:
+	 *       their keys, life minus the generated life, and state of every tile
+	 **/
+	static final int MAGIC = 0x4C4B5356;
+	static final int VERSION = 1;
+	static final int BUFFER_BYTES = 1 << 16;
+	static final int COPY_BUDGET = 8;
+	static final int ALIVE_STATE = 0;
+	static final int MOUNTAIN_STATE = 1;
+	static final int DEAD1_STATE = 2;
+	static final int DEAD2_STATE = 3;
+	static ExecutorService writers = null;
+	World world;
+	long seed;
+	int rows;
+	int cols;
+	long ticks;
+	byte[] random;
+	double[] king = new double[6];
+	double locustLife;
+	double biteCarry;
+	int alive;
+	int dead;
+	int mountain;
+	int count;
+	double[] x;
+	double[] y;
+	double[] prevX;
+	double[] prevY;
+	double[] vx;
+	double[] vy;
+	long[] counted = new long[0];
+	TileMap.Frozen tiles = null;
+	ArrayList<Long> chunkKeys = new ArrayList<Long>();
+	ArrayList<short[]> lifeChanges = new ArrayList<short[]>();
+	ArrayList<byte[]> states = new ArrayList<byte[]>();
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Autosave saves a world to the same file every everyTicks ticks while
+	 * it runs. tick() is called by World.updateBoids() after every tick, it
+	 * starts a save, copies the frozen chunks a few at a time and hands the
+	 * save to the background thread when they are all copied. A save isn't
+	 * started while the last one is still being written.
+	 * finish() completes a save that was started and waits until it is written.
+	 **/
+	static class Autosave{
+		String path;
+		int everyTicks;
+		SaveGame saving = null;
+		Future<?> writing = null;
+
+		Autosave(String path, int everyTicks){
+			this.path = path;
+			this.everyTicks = Math.max(1, everyTicks);
+		}
+
+		void tick(World world){
+			if(saving != null){
+				if(saving.copyTiles(COPY_BUDGET)){
+					SaveGame save = saving;
+					saving = null;
+					writing = writers().submit(() -> {
+						try{
+							save.write(path);
+						}
+						catch(IOException e){
+							System.out.println("autosave: " + e.getMessage());
+						}
+					});
+				}
+			}
+			else if(world.ticks % everyTicks == 0 && (writing == null || writing.isDone())){
+				saving = capture(world);
+			}
+		}// tick ()
+
+		void finish() throws IOException{
+			if(saving != null){
+				saving.copyTiles(Integer.MAX_VALUE);
+				saving.write(path);
+				saving = null;
+			}
+			if(writing != null){
+				try{
+					writing.get();
+				}
+				catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+				catch(ExecutionException e){
+					throw new IOException("Autosave failed", e.getCause());
+				}
+			}
+		}// finish ()
+	}// class Autosave
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * capture() starts saving a world: everything but the tiles is copied,
+	 * the changed chunks are frozen. Simulation thread only, between ticks.
+	 * copyTiles() copies up to budget frozen chunks and returns true once
+	 * they are all copied, then the save can be written. Simulation thread only.
+	 * save() saves a world to path right away.
+	 **/
+	public static SaveGame capture(World world){
+		SaveGame save = new SaveGame();
+		save.world = world;
+		save.seed = world.seed;
+		save.rows = world.map.rows;
+		save.cols = world.map.cols;
+		save.ticks = world.ticks;
+		try{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(world.random);
+			out.close();
+			save.random = bytes.toByteArray();
+		}
+		catch(IOException e){
+			throw new IllegalStateException("Could not save the world's random numbers", e); //not with a byte array
+		}
+		KingBoid k = world.kingBoid;
+		save.king = new double[]{k.position.x, k.position.y, k.previousPosition.x, k.previousPosition.y, k.velocity.x, k.velocity.y};
+		save.locustLife = Locust.life;
+		save.biteCarry = world.biteCarry;
+		save.alive = world.aliveTiles;
+		save.dead = world.deadTiles;
+		save.mountain = world.mountainTiles;
+		Swarm swarm = world.swarm;
+		save.count = swarm.count;
+		save.x = Arrays.copyOf(swarm.x, swarm.count);
+		save.y = Arrays.copyOf(swarm.y, swarm.count);
+		save.prevX = Arrays.copyOf(swarm.prevX, swarm.count);
+		save.prevY = Arrays.copyOf(swarm.prevY, swarm.count);
+		save.vx = Arrays.copyOf(swarm.vx, swarm.count);
+		save.vy = Arrays.copyOf(swarm.vy, swarm.count);
+		if(world.map.infinite){
+			save.counted = new long[world.map.counted.size()];
+			int i = 0;
+			for(long key : world.map.counted){
+				save.counted[i++] = key;
+			}
+		}
+		world.map.freeze();
+		return save;
+	}// capture ()
+
+	public boolean copyTiles(int budget){
+		tiles = world.map.copyFrozen(budget);
+		return tiles != null;
+	}// copyTiles ()
+
+	public static void save(World world, String path) throws IOException{
+		SaveGame save = capture(world);
+		save.copyTiles(Integer.MAX_VALUE);
+		save.write(path);
+	}// save ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * write() writes a save whose tiles are copied to path. Works on any
+	 * thread, the world can go on running.
+	 **/
+	public void write(String path) throws IOException{
+		TreeMap<Long, TileMap.Chunk> chunks = new TreeMap<Long, TileMap.Chunk>(); //in order, so the same game makes the same file
+		for(Map.Entry<Long, byte[]> entry : tiles.stored.entrySet()){
+			chunks.put(entry.getKey(), TileMap.Chunk.unpack(entry.getValue()));
+		}
+		for(int i = 0; i < tiles.keys.length; i++){ //a chunk in a slot is newer than its compressed copy
+			chunks.put(tiles.keys[i], tiles.copies[i]);
+		}
+
+		Path target = Paths.get(path).toAbsolutePath();
+		Path temporary = target.resolveSibling(target.getFileName() + ".part");
+		try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			Writer out = new Writer(channel);
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putLong(seed);
+			out.putInt(rows);
+			out.putInt(cols);
+			out.putLong(ticks);
+			out.putInt(random.length);
+			out.putBytes(random, random.length);
+			out.putDoubles(king, king.length);
+			out.putDouble(locustLife);
+			out.putDouble(biteCarry);
+			out.putInt(alive);
+			out.putInt(dead);
+			out.putInt(mountain);
+			out.putInt(count);
+			for(double[] array : new double[][]{x, y, prevX, prevY, vx, vy}){
+				out.putDoubles(array, count);
+			}
+			out.putInt(counted.length);
+			for(long key : counted){
+				out.putLong(key);
+			}
+			out.putInt(chunks.size());
+			byte[] packed = new byte[TileMap.CHUNK_AREA / 4];
+			for(Map.Entry<Long, TileMap.Chunk> entry : chunks.entrySet()){
+				int chunkRow = (int)(entry.getKey() >> 32);
+				int chunkCol = (int)(long)entry.getKey();
+				TileMap.Chunk chunk = entry.getValue();
+				TileMap.Chunk generated = world.generateChunk(chunkRow, chunkCol, rows, cols);
+				out.putVarint(zigzag(chunkRow));
+				out.putVarint(zigzag(chunkCol));
+				int i = 0;
+				while(i < TileMap.CHUNK_AREA){
+					int run = 0;
+					while(i < TileMap.CHUNK_AREA && chunk.life[i] == generated.life[i]){
+						run++;
+						i++;
+					}
+					out.putVarint(run);
+					if(i < TileMap.CHUNK_AREA){
+						out.putVarint(zigzag(chunk.life[i] - generated.life[i]));
+						i++;
+					}
+				}
+				Arrays.fill(packed, (byte)0);
+				for(int t = 0; t < TileMap.CHUNK_AREA; t++){
+					packed[t >> 2] |= state(chunk, t) << ((t & 3) * 2);
+				}
+				out.putBytes(packed, packed.length);
+			}
+			out.flush();
+			channel.force(true);
+		}
+		Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}// write ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * read() reads a save from path. Make a world with its seed, rows and
+	 * cols and restore() it into that.
+	 **/
+	public static SaveGame read(String path) throws IOException{
+		SaveGame save = new SaveGame();
+		try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)){
+			Reader in = new Reader(channel, path);
+			if(in.getInt() != MAGIC){
+				throw new IOException(path + " is not a saved game");
+			}
+			int version = in.getInt();
+			if(version != VERSION){
+				throw new IOException("Saved game version " + version + " isn't supported, this game reads version " + VERSION);
+			}
+			save.seed = in.getLong();
+			save.rows = in.getInt();
+			save.cols = in.getInt();
+			save.ticks = in.getLong();
+			save.random = new byte[in.getInt()];
+			in.getBytes(save.random);
+			in.getDoubles(save.king);
+			save.locustLife = in.getDouble();
+			save.biteCarry = in.getDouble();
+			save.alive = in.getInt();
+			save.dead = in.getInt();
+			save.mountain = in.getInt();
+			save.count = in.getInt();
+			save.x = in.getDoubles(new double[save.count]);
+			save.y = in.getDoubles(new double[save.count]);
+			save.prevX = in.getDoubles(new double[save.count]);
+			save.prevY = in.getDoubles(new double[save.count]);
+			save.vx = in.getDoubles(new double[save.count]);
+			save.vy = in.getDoubles(new double[save.count]);
+			save.counted = new long[in.getInt()];
+			for(int i = 0; i < save.counted.length; i++){
+				save.counted[i] = in.getLong();
+			}
+			int chunks = in.getInt();
+			for(int c = 0; c < chunks; c++){
+				int chunkRow = unzigzag(in.getVarint());
+				int chunkCol = unzigzag(in.getVarint());
+				short[] changes = new short[TileMap.CHUNK_AREA];
+				int i = 0;
+				while(i < TileMap.CHUNK_AREA){
+					i += in.getVarint();
+					if(i < TileMap.CHUNK_AREA){
+						changes[i++] = (short)unzigzag(in.getVarint());
+					}
+				}
+				if(i != TileMap.CHUNK_AREA){
+					throw new IOException(path + " is corrupt: chunk " + chunkRow + ", " + chunkCol + " has too many tiles");
+				}
+				byte[] packed = new byte[TileMap.CHUNK_AREA / 4];
+				in.getBytes(packed);
+				save.chunkKeys.add(TileMap.key(chunkRow, chunkCol));
+				save.lifeChanges.add(changes);
+				save.states.add(packed);
+			}
+		}
+		return save;
+	}// read ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * restore() puts a save read with read() into a world just made from the
+	 * save's seed and size, before it runs: the world is then the saved game.
+	 **/
+	public void restore(World world) throws IOException{
+		if(world.seed != seed || world.map.rows != rows || world.map.cols != cols){
+			throw new IllegalArgumentException("A game saved in the world of seed " + seed + ", " + rows + " x " + cols
+				+ " tiles can't be loaded into seed " + world.seed + ", " + world.map.rows + " x " + world.map.cols);
+		}
+		try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(random))){
+			world.random = (Random)in.readObject();
+		}
+		catch(ClassNotFoundException e){
+			throw new IOException("Saved random numbers are corrupt", e);
+		}
+		world.ticks = ticks;
+		KingBoid k = world.kingBoid;
+		k.position.set(king[0], king[1]);
+		k.previousPosition.set(king[2], king[3]);
+		k.velocity = new Pair(king[4], king[5]);
+		Locust.life = locustLife;
+		world.biteCarry = biteCarry;
+		Swarm swarm = new Swarm(count);
+		for(int i = 0; i < count; i++){
+			swarm.add(x[i], y[i], vx[i], vy[i]);
+			swarm.prevX[i] = prevX[i];
+			swarm.prevY[i] = prevY[i];
+		}
+		world.swarm = swarm;
+
+		TileMap map = world.map;
+		if(map.infinite){ //start over with an empty map, the saved chunks load as the king gets near
+			map = new TileMap(world, 0, 0);
+			world.map = map;
+			for(long key : counted){
+				map.counted.add(key);
+			}
+		}
+		for(int c = 0; c < chunkKeys.size(); c++){
+			int chunkRow = (int)(chunkKeys.get(c) >> 32);
+			int chunkCol = (int)(long)chunkKeys.get(c);
+			TileMap.Chunk chunk = world.generateChunk(chunkRow, chunkCol, rows, cols);
+			short[] changes = lifeChanges.get(c);
+			byte[] packed = states.get(c);
+			for(int t = 0; t < TileMap.CHUNK_AREA; t++){
+				chunk.life[t] += changes[t];
+				int state = (packed[t >> 2] >> ((t & 3) * 2)) & 3;
+				chunk.flags[t] = (state == ALIVE_STATE) ? TileMap.ALIVE : (state == MOUNTAIN_STATE) ? TileMap.MOUNTAIN : 0;
+				chunk.sprite[t] = (byte)((state == ALIVE_STATE) ? TileMap.spriteFor(chunk.life[t])
+					: (state == MOUNTAIN_STATE) ? Sprites.MTN : (state == DEAD1_STATE) ? Sprites.DEAD1 : Sprites.DEAD2);
+			}
+			map.restore(chunkRow, chunkCol, chunk);
+		}
+		if(map.infinite){
+			world.aliveTiles = alive;
+			world.deadTiles = dead;
+			world.mountainTiles = mountain;
+			map.follow(k.position.x, k.position.y);
+		}
+		else{
+			world.countTiles();
+		}
+	}// restore ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * state() is what tile t of a chunk is, see ALIVE_STATE ...
+	 **/
+	private static int state(TileMap.Chunk chunk, int t){
+		if((chunk.flags[t] & TileMap.ALIVE) != 0){
+			return ALIVE_STATE;
+		}
+		if((chunk.flags[t] & TileMap.MOUNTAIN) != 0){
+			return MOUNTAIN_STATE;
+		}
+		return (chunk.sprite[t] == Sprites.DEAD2) ? DEAD2_STATE : DEAD1_STATE;
+	}// state ()
+
+	private static synchronized ExecutorService writers(){
+		if(writers == null){
+			writers = Executors.newSingleThreadExecutor(task -> {
+				Thread thread = new Thread(task, "autosave");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
+		}
+		return writers;
+	}// writers ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Writer streams a save into a file through one buffer, writing the
+	 * buffer out whenever it fills up. Reader reads one back the same way.
+	 * Arrays of doubles go in and out of the buffer in bulk.
+	 * Varints and zigzag() are the same as in InputTrace.
+	 **/
+	static class Writer{
+		FileChannel channel;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+		Writer(FileChannel channel){
+			this.channel = channel;
+		}
+
+		void room(int bytes) throws IOException{
+			if(buffer.remaining() < bytes){
+				flush();
+			}
+		}
+
+		void flush() throws IOException{
+			buffer.flip();
+			while(buffer.hasRemaining()){
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		void putInt(int value) throws IOException{
+			room(4);
+			buffer.putInt(value);
+		}
+
+		void putLong(long value) throws IOException{
+			room(8);
+			buffer.putLong(value);
+		}
+
+		void putDouble(double value) throws IOException{
+			room(8);
+			buffer.putDouble(value);
+		}
+
+		void putVarint(int value) throws IOException{
+			room(5);
+			while((value & ~0x7F) != 0){
+				buffer.put((byte)((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte)value);
+		}
+
+		void putBytes(byte[] values, int length) throws IOException{
+			for(int i = 0; i < length; ){
+				room(1);
+				int n = Math.min(length - i, buffer.remaining());
+				buffer.put(values, i, n);
+				i += n;
+			}
+		}
+
+		void putDoubles(double[] values, int length) throws IOException{
+			for(int i = 0; i < length; ){
+				room(8);
+				int n = Math.min(length - i, buffer.remaining() / 8);
+				buffer.asDoubleBuffer().put(values, i, n);
+				buffer.position(buffer.position() + n * 8);
+				i += n;
+			}
+		}
+	}// class Writer
+
+	static class Reader{
+		FileChannel channel;
+		String path;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+		Reader(FileChannel channel, String path){
+			this.channel = channel;
+			this.path = path;
+			buffer.flip(); //empty
+		}
+
+		void need(int bytes) throws IOException{
+			if(buffer.remaining() >= bytes){
+				return;
+			}
+			buffer.compact();
+			while(buffer.position() < bytes){
+				if(channel.read(buffer) < 0){
+					throw new IOException(path + " is cut short");
+				}
+			}
+			buffer.flip();
+		}
+
+		int getInt() throws IOException{
+			need(4);
+			return buffer.getInt();
+		}
+
+		long getLong() throws IOException{
+			need(8);
+			return buffer.getLong();
+		}
+
+		double getDouble() throws IOException{
+			need(8);
+			return buffer.getDouble();
+		}
+
+		int getVarint() throws IOException{
+			int value = 0;
+			for(int shift = 0; shift < 32; shift += 7){
+				need(1);
+				int b = buffer.get() & 0xFF;
+				value |= (b & 0x7F) << shift;
+				if((b & 0x80) == 0){
+					return value;
+				}
+			}
+			throw new IOException(path + " is corrupt: bad varint");
+		}
+
+		byte[] getBytes(byte[] values) throws IOException{
+			for(int i = 0; i < values.length; ){
+				need(1);
+				int n = Math.min(values.length - i, buffer.remaining());
+				buffer.get(values, i, n);
+				i += n;
+			}
+			return values;
+		}
+
+		double[] getDoubles(double[] values) throws IOException{
+			for(int i = 0; i < values.length; ){
+				need(8);
+				int n = Math.min(values.length - i, buffer.remaining() / 8);
+				buffer.asDoubleBuffer().get(values, i, n);
+				buffer.position(buffer.position() + n * 8);
+				i += n;
+			}
+			return values;
+		}
+	}// class Reader
+
+	private static int zigzag(int n){
+		return (n << 1) ^ (n >> 31);
+	}// zigzag ()
+
+	private static int unzigzag(int n){
+		return (n >>> 1) ^ -(n & 1);
+	}// unzigzag ()
+	//=======================================================================
+
+}// class SaveGame
+//=======================================================================
@@ -0,0 +1,167 @@
+//=======================================================================
+/**
+ * This is the SpatialGrid Class of the Plague! game.
+ * It is a uniform grid spatial hash over the locusts, used by
+ * Locust.neighborhood() so a locust only looks at the locusts in the cells
+ * around it instead of the whole swarm. Entries are swarm indices.
+ *
+ * The grid is infinite (locusts are not kept inside the world), so cells are
+ * hashed into a table of buckets. Entries are stored bucket by bucket in one
+ * int array (a counting sort), which means rebuilding the grid does not
+ * allocate once the arrays are big enough for the swarm.
+ *
+ * Reference: "Optimized Spatial Hashing for Collision Detection of
+ * Deformable Objects", Teschner et al.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.util.Arrays;
+//=======================================================================
+
+
+
+//=======================================================================
+class SpatialGrid{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param cellSize width and height of a cell in world units
+	 *@param count number of boids in the grid since the last rebuild()
+	 *@param mask bucket table size - 1, the table size is a power of two
+	 *@param bucketStart index of the first entry of each bucket, bucketStart[mask+1] == count
+	 *@param entries boid indices, sorted by bucket
+	 *@param entryCellX cell x coordinate of each entry, used to skip hash collisions
+	 *@param entryCellY cell y coordinate of each entry, used to skip hash collisions
+	 *@param boidBucket scratch array holding the bucket of each boid during rebuild()
+	 **/
+	double cellSize;
+	int count = 0;
+	int mask = 0;
+	int[] bucketStart = new int[2];
+	int[] entries = new int[0];
+	int[] entryCellX = new int[0];
+	int[] entryCellY = new int[0];
+	int[] boidBucket = new int[0];
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * SpatialGrid constructor. Cell size should be the largest distance a
+	 * query cares about, so that a query only has to look at the 3x3 block of
+	 * cells around a position.
+	 **/
+	public SpatialGrid(double cellSize){
+		this.cellSize = cellSize;
+	}// SpatialGrid constructor
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * rebuild() puts the first n positions of the x and y arrays into the grid.
+	 * Entries within a bucket keep the order of the arrays.
+	 **/
+	public void rebuild(double[] x, double[] y, int n){
+		ensureCapacity(n);
+		Arrays.fill(bucketStart, 0, mask + 2, 0);
+
+		for(int i = 0; i < n; i++){ //count the boids in each bucket
+			int bucket = bucket(cellOf(x[i]), cellOf(y[i]));
+			boidBucket[i] = bucket;
+			bucketStart[bucket + 1]++;
+		}
+		for(int i = 0; i <= mask; i++){ //prefix sum, bucketStart[i] is now where bucket i begins
+			bucketStart[i + 1] += bucketStart[i];
+		}
+		for(int i = 0; i < n; i++){ //scatter, using bucketStart as a moving write position
+			int slot = bucketStart[boidBucket[i]]++;
+			entries[slot] = i;
+			entryCellX[slot] = cellOf(x[i]);
+			entryCellY[slot] = cellOf(y[i]);
+		}
+		for(int i = mask; i > 0; i--){ //the scatter moved every start to the next bucket's start, shift back
+			bucketStart[i] = bucketStart[i - 1];
+		}
+		bucketStart[0] = 0;
+		count = n;
+	}// rebuild ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * ensureCapacity() grows the arrays so n boids fit. The bucket table is
+	 * kept at least twice as big as the swarm so buckets stay short.
+	 **/
+	private void ensureCapacity(int n){
+		if(entries.length < n){
+			int size = Math.max(n, entries.length * 2);
+			entries = new int[size];
+			entryCellX = new int[size];
+			entryCellY = new int[size];
+			boidBucket = new int[size];
+		}
+		int tableSize = 64;
+		while(tableSize < 2 * n){
+			tableSize *= 2;
+		}
+		if(tableSize - 1 > mask){
+			mask = tableSize - 1;
+			bucketStart = new int[tableSize + 1];
+		}
+	}// ensureCapacity ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * cellOf() returns the cell coordinate of a world coordinate.
+	 **/
+	public int cellOf(double coord){
+		return (int)Math.floor(coord / cellSize);
+	}// cellOf ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * bucket() hashes a cell to its bucket. Different cells can share a
+	 * bucket, use inCell() to tell them apart.
+	 **/
+	public int bucket(int cellX, int cellY){
+		return ((cellX * 73856093) ^ (cellY * 19349663)) & mask;
+	}// bucket ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Accessors used to walk a bucket:
+	 * for(int e = grid.bucketStart(b); e < grid.bucketEnd(b); e++){ ... grid.boidAt(e) ... }
+	 **/
+	public int bucketStart(int bucket){
+		return bucketStart[bucket];
+	}// bucketStart ()
+
+	public int bucketEnd(int bucket){
+		return bucketStart[bucket + 1];
+	}// bucketEnd ()
+
+	public boolean inCell(int entry, int cellX, int cellY){
+		return entryCellX[entry] == cellX && entryCellY[entry] == cellY;
+	}// inCell ()
+
+	public int boidAt(int entry){
+		return entries[entry];
+	}// boidAt ()
+	//=======================================================================
+
+}// class SpatialGrid
+//=======================================================================
@@ -0,0 +1,186 @@
+//=======================================================================
+/**
+ * This is the Sprites Class of the Plague! game.
+ * It is the one place sprites are loaded from. Every png in sprites/ is
+ * decoded once, when the class is first used, and packed into a single
+ * atlas image. Tiles and boids refer to a sprite by its index (the constants
+ * below) instead of a filepath, and nothing has to build an ImageIcon while
+ * drawing a frame.
+ *
+ * The atlas is made compatible with the screen when there is one, so Java2D
+ * can keep it in video memory and blitting a sprite is a plain copy.
+ *
+ * Atlas packing: sprites are put on shelves (rows) left to right, a new shelf
+ * starts when a row is full.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+//=======================================================================
+
+
+
+//=======================================================================
+class Sprites{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Sprite indices, in the same order as FILES.
+	 *@param FILES filepath of every sprite
+	 *@param ATLAS_WIDTH width of the atlas, sprites wider than this get a shelf to themselves
+	 *@param atlas every sprite packed into one image
+	 *@param atlasX x position of each sprite in the atlas
+	 *@param atlasY y position of each sprite in the atlas
+	 *@param images each sprite as a subimage of the atlas (shares the atlas pixels)
+	 **/
+	static final int LIVE1 = 0;
+	static final int LIVE2 = 1;
+	static final int LIVE3 = 2;
+	static final int LIVE4 = 3;
+	static final int DEAD1 = 4;
+	static final int DEAD2 = 5;
+	static final int MTN = 6;
+	static final int KING_CROWN_SMALL = 7;
+	static final int KING_CROWN = 8;
+	static final int KING_NOCROWN = 9;
+	static final int LOCUST_GOOD = 10;
+	static final int LOCUST_SWARM = 11;
+
+	static final String[] FILES = {
+		"sprites/live1.png",
+		"sprites/live2.png",
+		"sprites/live3.png",
+		"sprites/live4.png",
+		"sprites/dead1.png",
+		"sprites/dead2.png",
+		"sprites/mtn.png",
+		"sprites/king_crown_small.png",
+		"sprites/king_crown.png",
+		"sprites/king_nocrown.png",
+		"sprites/locust_good.png",
+		"sprites/locust_swarm.png"
+	};
+
+	static final int ATLAS_WIDTH = 2048;
+	static BufferedImage atlas;
+	static int[] atlasX = new int[FILES.length];
+	static int[] atlasY = new int[FILES.length];
+	static BufferedImage[] images = new BufferedImage[FILES.length];
+
+	static{
+		load();
+	}
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * load() decodes every sprite and packs them into the atlas.
+	 * Runs once, from the static initializer.
+	 **/
+	private static void load(){
+		BufferedImage[] decoded = new BufferedImage[FILES.length];
+		int shelfX = 0;
+		int shelfY = 0;
+		int shelfHeight = 0;
+		int atlasHeight = 0;
+		for(int i = 0; i < FILES.length; i++){
+			try{
+				decoded[i] = ImageIO.read(new File(FILES[i]));
+			}
+			catch(IOException e){
+				decoded[i] = null;
+			}
+			if(decoded[i] == null){
+				throw new IllegalStateException("Could not load sprite " + FILES[i] + ", run the game from the folder that has sprites/ in it");
+			}
+			int w = decoded[i].getWidth();
+			int h = decoded[i].getHeight();
+			if(shelfX > 0 && shelfX + w > ATLAS_WIDTH){ //start a new shelf
+				shelfY += shelfHeight;
+				shelfX = 0;
+				shelfHeight = 0;
+			}
+			atlasX[i] = shelfX;
+			atlasY[i] = shelfY;
+			shelfX += w;
+			shelfHeight = Math.max(shelfHeight, h);
+			atlasHeight = Math.max(atlasHeight, shelfY + shelfHeight);
+		}
+
+		int atlasWidth = 0;
+		for(int i = 0; i < FILES.length; i++){
+			atlasWidth = Math.max(atlasWidth, atlasX[i] + decoded[i].getWidth());
+		}
+		atlas = createImage(atlasWidth, atlasHeight);
+		Graphics2D g = atlas.createGraphics();
+		for(int i = 0; i < FILES.length; i++){
+			g.drawImage(decoded[i], atlasX[i], atlasY[i], null);
+		}
+		g.dispose();
+		for(int i = 0; i < FILES.length; i++){
+			images[i] = atlas.getSubimage(atlasX[i], atlasY[i], decoded[i].getWidth(), decoded[i].getHeight());
+		}
+	}// load ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * createImage() makes a translucent image in the screen's format, or a
+	 * plain ARGB image when there is no screen (headless runs).
+	 * createOpaqueImage() is the same without an alpha channel, which is
+	 * quicker to blit.
+	 **/
+	static BufferedImage createImage(int w, int h){
+		if(GraphicsEnvironment.isHeadless()){
+			return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		}
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+			.getDefaultConfiguration().createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+	}// createImage ()
+
+	static BufferedImage createOpaqueImage(int w, int h){
+		if(GraphicsEnvironment.isHeadless()){
+			return new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		}
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+			.getDefaultConfiguration().createCompatibleImage(w, h, Transparency.OPAQUE);
+	}// createOpaqueImage ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * get() returns a sprite as an image of its own.
+	 * draw() blits it straight from the atlas, which is what tiles use.
+	 **/
+	public static BufferedImage get(int sprite){
+		return images[sprite];
+	}// get ()
+
+	public static void draw(Graphics g, int sprite, int x, int y, ImageObserver observer){
+		int w = images[sprite].getWidth();
+		int h = images[sprite].getHeight();
+		int sx = atlasX[sprite];
+		int sy = atlasY[sprite];
+		g.drawImage(atlas, x, y, x + w, y + h, sx, sy, sx + w, sy + h, observer);
+	}// draw ()
+	//=======================================================================
+
+}// class Sprites
+//=======================================================================
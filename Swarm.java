@@ -0,0 +1,193 @@
+//=======================================================================
+/**
+ * This is the Swarm Class of the Plague! game.
+ * It stores every follower locust as a row of primitive arrays (structure of
+ * arrays) instead of one object per locust, so the flocking kernel in Locust
+ * walks plain doubles and a tick doesn't allocate anything per locust.
+ *
+ * Velocities are double buffered: Locust.flock() reads vx/vy and writes
+ * nextVx/nextVy, then swapVelocities() makes the new ones current.
+ * Positions from the start of the tick are kept in prevX/prevY, so frames
+ * drawn between two ticks can put a locust between the two positions.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.util.Arrays;
+//=======================================================================
+
+
+
+//=======================================================================
+class Swarm{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param count number of locusts, rows count and up are unused
+	 *@param x x positions
+	 *@param y y positions
+	 *@param prevX x positions at the start of the tick, see savePositions()
+	 *@param prevY y positions at the start of the tick
+	 *@param vx x velocities (front buffer)
+	 *@param vy y velocities (front buffer)
+	 *@param nextVx x velocities being computed this tick (back buffer)
+	 *@param nextVy y velocities being computed this tick (back buffer)
+	 *@param tile index in the TileMap of the tile each locust moved onto this tick (TileMap.OFF_MAP off the map), -1 until it moves
+	 **/
+	int count = 0;
+	double[] x;
+	double[] y;
+	double[] prevX;
+	double[] prevY;
+	double[] vx;
+	double[] vy;
+	double[] nextVx;
+	double[] nextVy;
+	int[] tile;
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Swarm constructor. The arrays start with room for capacity locusts and
+	 * double whenever they fill up.
+	 **/
+	public Swarm(int capacity){
+		capacity = Math.max(capacity, 1);
+		x = new double[capacity];
+		y = new double[capacity];
+		prevX = new double[capacity];
+		prevY = new double[capacity];
+		vx = new double[capacity];
+		vy = new double[capacity];
+		nextVx = new double[capacity];
+		nextVy = new double[capacity];
+		tile = new int[capacity];
+	}// Swarm constructor
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * add() appends a locust and returns its index.
+	 * It hasn't moved, so its previous position is where it is.
+	 **/
+	public int add(double posX, double posY, double velX, double velY){
+		if(count == x.length){
+			grow();
+		}
+		int i = count++;
+		x[i] = posX;
+		y[i] = posY;
+		prevX[i] = posX;
+		prevY[i] = posY;
+		vx[i] = velX;
+		vy[i] = velY;
+		tile[i] = -1;
+		return i;
+	}// add ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * remove() removes locust i by moving the last locust into its row.
+	 * The order of the other locusts is not kept.
+	 **/
+	public void remove(int i){
+		int last = count - 1;
+		x[i] = x[last];
+		y[i] = y[last];
+		prevX[i] = prevX[last];
+		prevY[i] = prevY[last];
+		vx[i] = vx[last];
+		vy[i] = vy[last];
+		nextVx[i] = nextVx[last];
+		nextVy[i] = nextVy[last];
+		tile[i] = tile[last];
+		tile[last] = -1;
+		count--;
+	}// remove ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * removeLast() removes the locust that was added last.
+	 **/
+	public void removeLast(){
+		remove(count - 1);
+	}// removeLast ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * copyPositions() makes this swarm's positions (and previous positions) a
+	 * copy of other's, for RenderSnapshot. Velocities and tiles aren't copied.
+	 **/
+	public void copyPositions(Swarm other){
+		while(x.length < other.count){
+			grow();
+		}
+		count = other.count;
+		System.arraycopy(other.x, 0, x, 0, count);
+		System.arraycopy(other.y, 0, y, 0, count);
+		System.arraycopy(other.prevX, 0, prevX, 0, count);
+		System.arraycopy(other.prevY, 0, prevY, 0, count);
+	}// copyPositions ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * savePositions() copies the positions into prevX/prevY, call it at the
+	 * start of a tick.
+	 **/
+	public void savePositions(){
+		System.arraycopy(x, 0, prevX, 0, count);
+		System.arraycopy(y, 0, prevY, 0, count);
+	}// savePositions ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * swapVelocities() makes the back buffer velocities the current ones.
+	 **/
+	public void swapVelocities(){
+		double[] temp = vx;
+		vx = nextVx;
+		nextVx = temp;
+		temp = vy;
+		vy = nextVy;
+		nextVy = temp;
+	}// swapVelocities ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * grow() doubles the size of every array.
+	 **/
+	private void grow(){
+		int size = x.length * 2;
+		x = Arrays.copyOf(x, size);
+		y = Arrays.copyOf(y, size);
+		prevX = Arrays.copyOf(prevX, size);
+		prevY = Arrays.copyOf(prevY, size);
+		vx = Arrays.copyOf(vx, size);
+		vy = Arrays.copyOf(vy, size);
+		nextVx = Arrays.copyOf(nextVx, size);
+		nextVy = Arrays.copyOf(nextVy, size);
+		tile = Arrays.copyOf(tile, size);
+	}// grow ()
+	//=======================================================================
+
+}// class Swarm
+//=======================================================================
@@ -0,0 +1,236 @@
+//=======================================================================
+/**
+ * This is the SwarmRenderer Class of the Plague! game.
+ * It draws the whole swarm with one image blit instead of one fillOval()
+ * per locust. Every locust on screen is stamped into an int[] raster the size
+ * of the display (the pixels of a BufferedImage), then the part of the
+ * raster that has locusts in it is drawn over the frame.
+ *
+ * A locust is the same 15 x 15 black dot fillOval() drew. Its pixels are
+ * worked out once, by drawing the oval into a small image, and kept as one
+ * span of pixels per row, so stamping a locust is a few Arrays.fill() calls.
+ * Locusts that are off screen are skipped, and only the box the last frame
+ * stamped into is cleared before the next one.
+ *
+ * With more than densityThreshold locusts the dots would just be a black
+ * blob, so the swarm is drawn as a density map instead: the display is cut
+ * into DENSITY_CELL x DENSITY_CELL pixel cells and each cell is shaded by
+ * how many locusts are in it.
+ *
+ * A SwarmRenderer belongs to one drawing thread.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+//=======================================================================
+
+
+
+//=======================================================================
+class SwarmRenderer{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param DOT_SIZE width and height of a locust dot in pixels
+	 *@param DOT_COLOR color of a locust dot, as an ARGB int
+	 *@param densityThreshold swarm size above which the density map is drawn instead of dots, 0 for never
+	 *@param DENSITY_CELL width and height of a density map cell in pixels
+	 *@param DENSITY_FULL number of locusts in a cell that make it fully black
+	 *@param dotStart first pixel of the dot on each row, relative to the dot's left edge
+	 *@param dotEnd pixel after the last pixel of the dot on each row, dotStart == dotEnd for an empty row
+	 *@param image the raster as an image, the size of the display
+	 *@param pixels the raster's pixels, ARGB premultiplied, row by row
+	 *@param dirtyLeft, dirtyTop, dirtyRight, dirtyBottom box of the raster that has been drawn in
+	 *       (right and bottom exclusive), empty when dirtyLeft >= dirtyRight
+	 *@param density locusts in each density map cell
+	 **/
+	static final int DOT_SIZE = 15;
+	static final int DOT_COLOR = 0xFF000000;
+	static int densityThreshold = 20000;
+	static final int DENSITY_CELL = 4;
+	static final int DENSITY_FULL = 8;
+	static int[] dotStart = new int[DOT_SIZE];
+	static int[] dotEnd = new int[DOT_SIZE];
+	BufferedImage image;
+	int[] pixels;
+	int dirtyLeft = 0;
+	int dirtyTop = 0;
+	int dirtyRight = 0;
+	int dirtyBottom = 0;
+	int[] density;
+
+	static{
+		makeDot();
+	}
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * SwarmRenderer constructor. Makes the raster, the size of the display.
+	 **/
+	public SwarmRenderer(){
+		image = new BufferedImage(Main.WIDTH, Main.HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+		pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+	}// SwarmRenderer constructor
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * makeDot() draws a locust dot the way Locust used to draw one and
+	 * records which pixels it covers on each row. Dots are convex, so each
+	 * row is a single span.
+	 **/
+	private static void makeDot(){
+		BufferedImage dot = new BufferedImage(DOT_SIZE, DOT_SIZE, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = dot.createGraphics();
+		g.setColor(Color.BLACK);
+		g.fillOval(0, 0, DOT_SIZE, DOT_SIZE);
+		g.dispose();
+		for(int row = 0; row < DOT_SIZE; row++){
+			dotStart[row] = DOT_SIZE;
+			dotEnd[row] = DOT_SIZE;
+			for(int col = 0; col < DOT_SIZE; col++){
+				if((dot.getRGB(col, row) >>> 24) != 0){
+					if(dotStart[row] == DOT_SIZE){
+						dotStart[row] = col;
+					}
+					dotEnd[row] = col + 1;
+				}
+			}
+		}
+	}// makeDot ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * draw() draws every locust in swarm that is on screen. (left, top) is the
+	 * top left corner of the display in the world, and each locust is drawn
+	 * a fraction alpha of the way from its previous position to its position.
+	 **/
+	public void draw(Graphics g, Swarm swarm, double left, double top, double alpha){
+		clear();
+		if(densityThreshold > 0 && swarm.count > densityThreshold){
+			stampDensity(swarm, left, top, alpha);
+		}
+		else{
+			stampDots(swarm, left, top, alpha);
+		}
+		if(dirtyLeft < dirtyRight){
+			g.drawImage(image, dirtyLeft, dirtyTop, dirtyRight, dirtyBottom, dirtyLeft, dirtyTop, dirtyRight, dirtyBottom, null);
+		}
+	}// draw ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * clear() makes the part of the raster the last frame drew in transparent again.
+	 **/
+	private void clear(){
+		for(int y = dirtyTop; y < dirtyBottom; y++){
+			Arrays.fill(pixels, y * Main.WIDTH + dirtyLeft, y * Main.WIDTH + dirtyRight, 0);
+		}
+		dirtyLeft = Main.WIDTH;
+		dirtyTop = Main.HEIGHT;
+		dirtyRight = 0;
+		dirtyBottom = 0;
+	}// clear ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * stampDots() stamps a dot for every locust that is at least partly on
+	 * screen. Dots are placed like fillOval() placed them, at the locust's
+	 * position truncated to a whole pixel.
+	 **/
+	private void stampDots(Swarm swarm, double left, double top, double alpha){
+		int width = Main.WIDTH;
+		int height = Main.HEIGHT;
+		for(int i = 0; i < swarm.count; i++){
+			int x = (int)(swarm.prevX[i] + (swarm.x[i] - swarm.prevX[i]) * alpha - left);
+			int y = (int)(swarm.prevY[i] + (swarm.y[i] - swarm.prevY[i]) * alpha - top);
+			if(x <= -DOT_SIZE || y <= -DOT_SIZE || x >= width || y >= height){
+				continue; //off screen
+			}
+			int firstRow = Math.max(0, -y);
+			int lastRow = Math.min(DOT_SIZE, height - y);
+			for(int row = firstRow; row < lastRow; row++){
+				int from = Math.max(0, x + dotStart[row]);
+				int to = Math.min(width, x + dotEnd[row]);
+				if(from < to){
+					int rowStart = (y + row) * width;
+					Arrays.fill(pixels, rowStart + from, rowStart + to, DOT_COLOR);
+				}
+			}
+			dirtyLeft = Math.min(dirtyLeft, Math.max(0, x));
+			dirtyTop = Math.min(dirtyTop, y + firstRow);
+			dirtyRight = Math.max(dirtyRight, Math.min(width, x + DOT_SIZE));
+			dirtyBottom = Math.max(dirtyBottom, y + lastRow);
+		}
+	}// stampDots ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * stampDensity() counts the locusts in each cell (by the center of their
+	 * dot) and shades every cell that has any, from light grey for one locust
+	 * to black for DENSITY_FULL or more.
+	 **/
+	private void stampDensity(Swarm swarm, double left, double top, double alpha){
+		int cols = (Main.WIDTH + DENSITY_CELL - 1) / DENSITY_CELL;
+		int rows = (Main.HEIGHT + DENSITY_CELL - 1) / DENSITY_CELL;
+		if(density == null){
+			density = new int[cols * rows];
+		}
+		else{
+			Arrays.fill(density, 0);
+		}
+		for(int i = 0; i < swarm.count; i++){
+			int x = (int)(swarm.prevX[i] + (swarm.x[i] - swarm.prevX[i]) * alpha - left) + DOT_SIZE/2;
+			int y = (int)(swarm.prevY[i] + (swarm.y[i] - swarm.prevY[i]) * alpha - top) + DOT_SIZE/2;
+			if(x < 0 || y < 0 || x >= Main.WIDTH || y >= Main.HEIGHT){
+				continue;
+			}
+			density[(y / DENSITY_CELL) * cols + (x / DENSITY_CELL)]++;
+		}
+		for(int row = 0; row < rows; row++){
+			for(int col = 0; col < cols; col++){
+				int n = density[row * cols + col];
+				if(n == 0){
+					continue;
+				}
+				int shade = 0xFF * Math.min(n, DENSITY_FULL) / DENSITY_FULL; //black with this much alpha, premultiplied
+				int x = col * DENSITY_CELL;
+				int y = row * DENSITY_CELL;
+				int xEnd = Math.min(Main.WIDTH, x + DENSITY_CELL);
+				int yEnd = Math.min(Main.HEIGHT, y + DENSITY_CELL);
+				for(int py = y; py < yEnd; py++){
+					Arrays.fill(pixels, py * Main.WIDTH + x, py * Main.WIDTH + xEnd, shade << 24);
+				}
+				dirtyLeft = Math.min(dirtyLeft, x);
+				dirtyTop = Math.min(dirtyTop, y);
+				dirtyRight = Math.max(dirtyRight, xEnd);
+				dirtyBottom = Math.max(dirtyBottom, yEnd);
+			}
+		}
+	}// stampDensity ()
+	//=======================================================================
+
+}// class SwarmRenderer
+//=======================================================================
@@ -0,0 +1,317 @@
+//=======================================================================
+/**
+ * This is the TileFile Class of the Plague! game.
+ * It keeps the tiles of a bounded world in a file mapped into memory
+ * (FileChannel.map()) instead of on the heap. The OS pages in the parts of
+ * the map the king is near and writes changed pages back on its own, so a
+ * huge map costs little heap and opens instantly: the file is the map.
+ *
+ * The first time a file is used it is made: the world's map is generated
+ * into it. After that, opening it skips generateMap() altogether. The file
+ * says which seed and size it was made for, and a world opened from it
+ * takes them from the file.
+ *
+ * Changes to the tiles go into the file (persistent) or only into this run's
+ * copy of the pages (not persistent, MapMode.PRIVATE), which is for runs that
+ * should all start from the same map, like benchmarks.
+ *
+ * File format (header big endian, see DataOutputStream; the rest little endian):
+ *   int     MAGIC
+ *   int     VERSION
+ *   long    seed of the world
+ *   int     rows, cols   size of the map in tiles
+ *   int     TileMap.CHUNK_TILES and World.REGION_TILES it was made with
+ *   byte    1 if the counts below are up to date, 0 while a persistent file is open
+ *   int     alive, dead and mountain tiles (see World)
+ * padded to HEADER_BYTES, then
+ *   int[]   alive, dead and mountain tiles of every region
+ * padded to a multiple of HEADER_BYTES, then TileMap's buffers: life (2
+ * bytes a tile), flags and sprite (1 byte a tile), TileMap.tiles() each.
+ * If a game stops without closing the file, the counts are worked out from
+ * the tiles the next time it is opened.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+//=======================================================================
+
+
+
+//=======================================================================
+class TileFile{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param MAGIC first four bytes of every tile file, "LKMP"
+	 *@param VERSION version of the file format
+	 *@param HEADER_BYTES size of the header, and what sections are padded to
+	 *@param path where the file is
+	 *@param persistent true when changes to the tiles are written to the file
+	 *@param made true when the file didn't exist (or was empty) and the map still has to be generated into it
+	 *@param seed, rows, cols the world the file was made for, read from the header when it isn't new
+	 *@param channel the open file
+	 *@param closed true once close() ran
+	 *@param lifePages, flagsPages, spritePages the mappings of TileMap's buffers
+	 **/
+	static final int MAGIC = 0x4C4B4D50;
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 4096;
+	String path;
+	boolean persistent;
+	boolean made;
+	long seed;
+	int rows;
+	int cols;
+	FileChannel channel;
+	boolean closed = false;
+	MappedByteBuffer lifePages;
+	MappedByteBuffer flagsPages;
+	MappedByteBuffer spritePages;
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * open() opens the tile file at path, making an empty one if there is
+	 * none. If it already holds a map, seed, rows and cols say which world
+	 * it is, make the world with them. Nothing is mapped until load().
+	 **/
+	public static TileFile open(String path, boolean persistent) throws IOException{
+		TileFile file = new TileFile();
+		file.path = path;
+		file.persistent = persistent;
+		file.channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		file.made = file.channel.size() == 0;
+		if(!file.made){
+			ByteBuffer header = file.read(0, 32);
+			if(header.getInt() != MAGIC){
+				file.channel.close();
+				throw new IOException(path + " is not a tile file");
+			}
+			int version = header.getInt();
+			if(version != VERSION){
+				file.channel.close();
+				throw new IOException("Tile file version " + version + " isn't supported, this game reads version " + VERSION);
+			}
+			file.seed = header.getLong();
+			file.rows = header.getInt();
+			file.cols = header.getInt();
+			if(header.getInt() != TileMap.CHUNK_TILES || header.getInt() != World.REGION_TILES){
+				file.channel.close();
+				throw new IOException(path + " was made with other chunk or region sizes, delete it to make it again");
+			}
+		}
+		return file;
+	}// open ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * load() makes world's map from the file, generating it into the file
+	 * first if the file is new, and sets the world's tile counts.
+	 * Called by the World constructor, which has its seed and size from the
+	 * file (or gave them to a new one).
+	 **/
+	public TileMap load(World world) throws IOException{
+		int worldRows = (int)world.worldDimensions.x;
+		int worldCols = (int)world.worldDimensions.y;
+		if(worldRows <= 0 || worldCols <= 0){
+			throw new IllegalArgumentException("Only a bounded world can be kept in a tile file");
+		}
+		if(made){
+			seed = world.seed;
+			rows = worldRows;
+			cols = worldCols;
+		}
+		else if(seed != world.seed || rows != worldRows || cols != worldCols){
+			throw new IllegalArgumentException(path + " holds the world of seed " + seed + ", " + rows + " x " + cols
+				+ " tiles, not seed " + world.seed + ", " + worldRows + " x " + worldCols);
+		}
+		long tiles = TileMap.tiles(rows, cols);
+		if(tiles * 2 > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("A map of " + rows + " x " + cols + " tiles is too big for a tile file");
+		}
+		TileMap map;
+		if(made){
+			channel.truncate(0); //in case an earlier try stopped half way
+			map = mapTiles(world, FileChannel.MapMode.READ_WRITE, null);
+			map.generateAll();
+			world.map = map;
+			world.countTiles();
+			writeHeader(world, true);
+			forceTiles();
+			made = false;
+			if(!persistent){ //the same pages, but from now on changes stay in this run
+				map = mapTiles(world, FileChannel.MapMode.PRIVATE, map);
+			}
+		}
+		else{
+			map = mapTiles(world, persistent ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.PRIVATE, null);
+			Arrays.fill(map.slotModified, true); //earlier games may have changed any of it
+			world.map = map;
+			if(read(0, 33).get(32) == 1){
+				readCounts(world);
+			}
+			else{
+				world.countTiles(); //the last game didn't close the file
+			}
+		}
+		if(persistent){
+			writeHeader(world, false); //open, the counts in the file go stale from now on
+		}
+		return map;
+	}// load ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * close() writes the world's tile counts into a persistent file, makes
+	 * sure every changed tile is on disk and closes it. Safe to call more than
+	 * once, and from another thread (e.g. when the game window is closed).
+	 * The map's buffers stay usable until they are garbage collected.
+	 **/
+	public synchronized void close(World world) throws IOException{
+		if(closed){
+			return;
+		}
+		closed = true;
+		if(persistent && lifePages != null){
+			forceTiles();
+			writeHeader(world, true);
+		}
+		channel.close();
+	}// close ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Layout of the file, see the class comment.
+	 * regionsBytes() is the size of the region counts, tilesStart() where TileMap's buffers start.
+	 **/
+	private long regionsBytes(){
+		long regions = (long)((rows + World.REGION_TILES - 1) / World.REGION_TILES) * ((cols + World.REGION_TILES - 1) / World.REGION_TILES);
+		return regions * 3 * 4;
+	}// regionsBytes ()
+
+	private long tilesStart(){
+		return HEADER_BYTES + (regionsBytes() + HEADER_BYTES - 1) / HEADER_BYTES * HEADER_BYTES;
+	}// tilesStart ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * mapTiles() maps TileMap's three buffers from the file. With a map,
+	 * it moves that map onto the new mappings, otherwise it makes a new map.
+	 * forceTiles() writes the changed pages of a persistent mapping to disk.
+	 **/
+	private TileMap mapTiles(World world, FileChannel.MapMode mode, TileMap map) throws IOException{
+		long tiles = TileMap.tiles(rows, cols);
+		long start = tilesStart();
+		lifePages = channel.map(mode, start, tiles * 2);
+		flagsPages = channel.map(mode, start + tiles * 2, tiles);
+		spritePages = channel.map(mode, start + tiles * 3, tiles);
+		ShortBuffer life = lifePages.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+		if(map == null){
+			return new TileMap(world, rows, cols, life, flagsPages, spritePages);
+		}
+		map.useBuffers(life, flagsPages, spritePages);
+		return map;
+	}// mapTiles ()
+
+	private void forceTiles(){
+		lifePages.force();
+		flagsPages.force();
+		spritePages.force();
+	}// forceTiles ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * writeHeader() writes the header and the region counts, with the
+	 * world's counts and whether they are up to date.
+	 * readCounts() sets the world's counts from the file.
+	 **/
+	private void writeHeader(World world, boolean countsUpToDate) throws IOException{
+		ByteBuffer header = ByteBuffer.allocate(45);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putLong(seed);
+		header.putInt(rows);
+		header.putInt(cols);
+		header.putInt(TileMap.CHUNK_TILES);
+		header.putInt(World.REGION_TILES);
+		header.put((byte)(countsUpToDate ? 1 : 0));
+		header.putInt(world.aliveTiles);
+		header.putInt(world.deadTiles);
+		header.putInt(world.mountainTiles);
+		header.flip();
+		write(0, header);
+		if(countsUpToDate){
+			ByteBuffer regions = ByteBuffer.allocate((int)regionsBytes()).order(ByteOrder.LITTLE_ENDIAN);
+			IntBuffer ints = regions.asIntBuffer();
+			ints.put(world.regionAlive);
+			ints.put(world.regionDead);
+			ints.put(world.regionMountain);
+			write(HEADER_BYTES, regions);
+		}
+		channel.force(false);
+	}// writeHeader ()
+
+	private void readCounts(World world) throws IOException{
+		ByteBuffer header = read(33, 12);
+		world.aliveTiles = header.getInt();
+		world.deadTiles = header.getInt();
+		world.mountainTiles = header.getInt();
+		world.makeRegions();
+		IntBuffer ints = read(HEADER_BYTES, (int)regionsBytes()).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		ints.get(world.regionAlive);
+		ints.get(world.regionDead);
+		ints.get(world.regionMountain);
+	}// readCounts ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * read() reads length bytes at position, write() writes a buffer there.
+	 **/
+	private ByteBuffer read(long position, int length) throws IOException{
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()){
+			if(channel.read(buffer, position + buffer.position()) < 0){
+				throw new IOException(path + " is cut short");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}// read ()
+
+	private void write(long position, ByteBuffer buffer) throws IOException{
+		while(buffer.hasRemaining()){
+			channel.write(buffer, position + buffer.position());
+		}
+	}// write ()
+	//=======================================================================
+
+}// class TileFile
+//=======================================================================
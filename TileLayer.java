@@ -0,0 +1,242 @@
+//=======================================================================
+/**
+ * This is the TileLayer Class of the Plague! game.
+ * Tiles hardly ever change how they look (only when TileMap.setSprite() picks
+ * a new sprite), so instead of drawing every tile in view every frame, the
+ * map is cut into chunks of CHUNK_TILES x CHUNK_TILES tiles and each chunk
+ * is drawn once into an off-screen image. A frame then only blits the
+ * handful of chunk images that are in view.
+ *
+ * A tile that changes sprite marks its chunk dirty by giving the chunk a new
+ * version, and the chunk image is redrawn the next time it is in view.
+ * Versions are kept by TileMap slot, so they work the same for infinite
+ * maps, where a slot holds different parts of the map over time: filling a
+ * slot marks all of it dirty. Every version comes from one counter, so an
+ * image can't match the version of a slot that was refilled since.
+ * Only the chunks near the king are kept, the least recently drawn ones are
+ * recycled for new chunks.
+ *
+ * Tile sprites have no transparent pixels, so chunk images are opaque
+ * (quicker to blit). Only chunks sticking out past the edge of the map need
+ * a transparent part.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.awt.AlphaComposite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+//=======================================================================
+
+
+
+//=======================================================================
+class TileLayer{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param CHUNK_TILES width and height of a chunk in tiles
+	 *@param MAX_CACHED most chunk images kept at once, a screen needs at most 9
+	 *@param world the world whose map is drawn
+	 *@param SLOT_CHUNKS chunks across a TileMap chunk
+	 *@param chunkRows number of chunk rows over the map, 0 for an infinite map
+	 *@param chunkCols number of chunk columns over the map, 0 for an infinite map
+	 *@param versions version of every chunk, by TileMap slot and then chunk in the slot (see versionIndex()),
+	 *       changed when one of its tiles changes sprite.
+	 *       Written by the simulation thread, read by the thread drawing frames.
+	 *@param lastVersion the last version given out
+	 *@param cache chunk images by chunk row and column (see TileMap.key()), least recently drawn first
+	 *@param spare opaque images of evicted chunks, reused for new ones
+	 **/
+	static final int CHUNK_TILES = 2;
+	static final int MAX_CACHED = 20;
+	static final int SLOT_CHUNKS = TileMap.CHUNK_TILES / CHUNK_TILES;
+	World world;
+	int chunkRows;
+	int chunkCols;
+	AtomicIntegerArray versions;
+	AtomicInteger lastVersion = new AtomicInteger();
+	LinkedHashMap<Long, Chunk> cache;
+	ArrayList<BufferedImage> spare = new ArrayList<BufferedImage>();
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * A cached chunk image and the chunk version it shows.
+	 **/
+	static class Chunk{
+		BufferedImage image;
+		int version = -1;
+	}
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * TileLayer constructor. Needs the world's map to be generated.
+	 **/
+	public TileLayer(World world){
+		this.world = world;
+		chunkRows = (world.map.rows + CHUNK_TILES - 1) / CHUNK_TILES;
+		chunkCols = (world.map.cols + CHUNK_TILES - 1) / CHUNK_TILES;
+		versions = new AtomicIntegerArray(world.map.slots * SLOT_CHUNKS * SLOT_CHUNKS);
+		cache = new LinkedHashMap<Long, Chunk>(MAX_CACHED * 2, .75f, true){ //access order, so the eldest entry is the least recently drawn
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest){
+				if(size() > MAX_CACHED){
+					BufferedImage image = eldest.getValue().image;
+					if(image.getTransparency() == Transparency.OPAQUE){
+						spare.add(image);
+					}
+					return true;
+				}
+				return false;
+			}
+		};
+	}// TileLayer constructor
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * markDirty() is called when the tile with the given TileMap index changes sprite.
+	 * markSlotDirty() is called when a TileMap slot is filled with a chunk of the map.
+	 * versionIndex() is the index in versions of the chunk a tile is in.
+	 **/
+	public void markDirty(int index){
+		versions.set(versionIndex(index), lastVersion.incrementAndGet());
+	}// markDirty ()
+
+	public void markSlotDirty(int slot){
+		int version = lastVersion.incrementAndGet();
+		for(int i = 0; i < SLOT_CHUNKS * SLOT_CHUNKS; i++){
+			versions.set(slot * SLOT_CHUNKS * SLOT_CHUNKS + i, version);
+		}
+	}// markSlotDirty ()
+
+	private static int versionIndex(int index){
+		int slot = index >> (2 * TileMap.CHUNK_SHIFT);
+		int row = ((index >> TileMap.CHUNK_SHIFT) & (TileMap.CHUNK_TILES - 1)) / CHUNK_TILES;
+		int col = (index & (TileMap.CHUNK_TILES - 1)) / CHUNK_TILES;
+		return (slot * SLOT_CHUNKS + row) * SLOT_CHUNKS + col;
+	}// versionIndex ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * draw() blits every chunk that is on screen when the display is centered
+	 * on (centerX, centerY), redrawing the chunks that changed first.
+	 * Chunks outside the TileMap's window aren't drawn.
+	 **/
+	public void draw(Graphics g, double centerX, double centerY, Main mainInstance){
+		double chunkWidth = CHUNK_TILES * Tile.width;
+		double chunkHeight = CHUNK_TILES * Tile.height;
+		double left = centerX - (Main.WIDTH/2); //top left corner of the display, see World.toDisplayCoords()
+		double top = centerY - (Main.HEIGHT/2);
+
+		int firstCol = (int)Math.floor(left / chunkWidth);
+		int lastCol = (int)Math.floor((left + Main.WIDTH) / chunkWidth);
+		int firstRow = (int)Math.floor(top / chunkHeight);
+		int lastRow = (int)Math.floor((top + Main.HEIGHT) / chunkHeight);
+		if(!world.map.infinite){
+			firstCol = Math.max(0, firstCol);
+			lastCol = Math.min(chunkCols - 1, lastCol);
+			firstRow = Math.max(0, firstRow);
+			lastRow = Math.min(chunkRows - 1, lastRow);
+		}
+
+		for(int r = firstRow; r <= lastRow; r++){
+			for(int c = firstCol; c <= lastCol; c++){
+				BufferedImage image = chunkImage(r, c, mainInstance);
+				if(image == null){
+					continue;
+				}
+				g.drawImage(image, (int)Math.floor(c*chunkWidth - left), (int)Math.floor(r*chunkHeight - top), mainInstance);
+			}
+		}
+	}// draw ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * chunkImage() returns the up to date image of a chunk, drawing it if it
+	 * isn't cached or changed since it was drawn, or null if the chunk isn't
+	 * in the TileMap's window.
+	 **/
+	private BufferedImage chunkImage(int chunkRow, int chunkCol, Main mainInstance){
+		int tile = world.map.index(chunkRow * CHUNK_TILES, chunkCol * CHUNK_TILES); //its top left tile, the whole chunk is in the same slot
+		if(tile == TileMap.OFF_MAP){
+			return null;
+		}
+		Long index = TileMap.key(chunkRow, chunkCol);
+		Chunk chunk = cache.get(index);
+		if(chunk == null){
+			chunk = new Chunk();
+			int w = (int)(CHUNK_TILES * Tile.width);
+			int h = (int)(CHUNK_TILES * Tile.height);
+			boolean onEdge = !world.map.infinite && ((chunkRow + 1) * CHUNK_TILES > world.map.rows || (chunkCol + 1) * CHUNK_TILES > world.map.cols);
+			if(onEdge){
+				chunk.image = Sprites.createImage(w, h);
+			}
+			else if(spare.isEmpty()){
+				chunk.image = Sprites.createOpaqueImage(w, h);
+			}
+			else{
+				chunk.image = spare.remove(spare.size() - 1);
+			}
+			cache.put(index, chunk);
+		}
+		int version = versions.get(versionIndex(tile)); //read before the tiles, so a change made while drawing marks the chunk dirty again
+		if(chunk.version != version){
+			renderChunk(chunk.image, chunkRow, chunkCol, mainInstance);
+			chunk.version = version;
+		}
+		return chunk.image;
+	}// chunkImage ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * renderChunk() draws the tiles of a chunk into its image. Chunks on the
+	 * edge of the map can stick out past it, that part stays transparent.
+	 **/
+	private void renderChunk(BufferedImage image, int chunkRow, int chunkCol, Main mainInstance){
+		Graphics2D g = image.createGraphics();
+		if(image.getTransparency() != Transparency.OPAQUE){
+			g.setComposite(AlphaComposite.Clear);
+			g.fillRect(0, 0, image.getWidth(), image.getHeight());
+			g.setComposite(AlphaComposite.SrcOver);
+		}
+		TileMap map = world.map;
+		int firstRow = chunkRow * CHUNK_TILES;
+		int firstCol = chunkCol * CHUNK_TILES;
+		for(int i = firstRow; i < firstRow + CHUNK_TILES; i++){
+			for(int j = firstCol; j < firstCol + CHUNK_TILES; j++){
+				int tile = map.index(i, j);
+				if(tile != TileMap.OFF_MAP){ //past the edge of a bounded map
+					Sprites.draw(g, map.getSprite(tile), (int)((j - firstCol) * Tile.width), (int)((i - firstRow) * Tile.height), mainInstance);
+				}
+			}
+		}
+		g.dispose();
+	}// renderChunk ()
+	//=======================================================================
+
+}// class TileLayer
+//=======================================================================
@@ -0,0 +1,776 @@
+//=======================================================================
+/**
+ * This is the TileMap Class of the Plague! game.
+ * It holds the tiles of the world in a few primitive arrays instead of one
+ * object per tile:
+ *   life    its life in tenths of a point (locusts eat a tenth per visit)
+ *   flags   ALIVE and MOUNTAIN bits
+ *   sprite  index of its image in Sprites
+ * which is 4 bytes a tile, so a 4000 x 4000 world takes 64 MB. A Tile
+ * object kept its position, the world, a double and two booleans, and every
+ * object has a header on top, well over 60 bytes.
+ *
+ * The map is cut into chunks of CHUNK_TILES x CHUNK_TILES tiles, and the
+ * arrays are cut into slots of one chunk each. A tile is an index into the
+ * arrays: its chunk's slot, then its row and column in the chunk. index()
+ * finds it through the window, the chunks the simulation can see and the
+ * slots they are in.
+ *
+ * A world with a size (bounded) has a slot for every chunk, all generated
+ * when the world is made, and the window is the whole map.
+ *
+ * A world without one (infinite, 0 x 0 tiles) is generated as the king flies
+ * over it. follow() keeps the window on the ACTIVE_RADIUS chunks around the
+ * king, generating chunks as they come into it, and has background threads
+ * generate the chunks up to PREFETCH_RADIUS away ahead of time. Only
+ * CACHED_CHUNKS chunks have slots; the one the king left longest ago is
+ * evicted to make room. Evicted chunks nothing changed are dropped (the same
+ * seed makes them again), the others are kept compressed. Nothing is ever
+ * forgotten, so the memory an infinite map needs grows with the ground the
+ * king has covered: every chunk ever loaded stays in counted (a Long in a
+ * HashSet, about 50 bytes) and every evicted chunk the swarm ate from stays
+ * in stored (its tiles deflated, about 2 KB of the 4 KB they take in a slot,
+ * plus about 100 bytes of map entry). The swarm only eats near the king, so
+ * stored stays far smaller than counted. Capping either would make the
+ * world forget what was eaten, or count regenerated chunks twice. Everything
+ * the simulation sees comes from the window, which only depends on where the
+ * king is, so how fast the background threads are doesn't change the game.
+ * Tiles outside the window (or the map) are OFF_MAP, which is a mountain.
+ *
+ * The arrays are buffers: heap buffers normally, or parts of a file mapped
+ * into memory for a bounded map kept on disk (see TileFile), so the OS only
+ * has to page in the parts of a huge map the king is near.
+ *
+ * Code that updates tiles every tick (the swarm) works with indices. get()
+ * returns a Tile, a small view of one index, for everything else.
+ *
+ * Tiles are dead when their life is 0 or less. Mountains are never alive.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+//=======================================================================
+
+
+
+//=======================================================================
+class TileMap{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param ALIVE flag of a tile that is alive
+	 *@param MOUNTAIN flag of a mountain tile
+	 *@param LIFE_SCALE life is kept in 1/LIFE_SCALE of a point
+	 *@param MAX_LIFE most life a tile can have, in 1/LIFE_SCALE of a point
+	 *@param CHUNK_SHIFT CHUNK_TILES is 1 << CHUNK_SHIFT
+	 *@param CHUNK_TILES width and height of a chunk in tiles
+	 *@param CHUNK_AREA tiles in a chunk, and in a slot
+	 *@param OFF_MAP index of a tile outside the map or the window
+	 *@param ACTIVE_RADIUS chunks the window reaches from the king's chunk, in every direction
+	 *@param PREFETCH_RADIUS chunks from the king's chunk that are generated ahead of time
+	 *@param CACHED_CHUNKS number of slots of an infinite map
+	 *@param generators background threads generating chunks ahead of time, shared by every map
+	 *@param world the world the tiles are in, never null: it generates the tiles and keeps their counts
+	 *@param infinite true when the map has no edge
+	 *@param rows, cols size of a bounded map in tiles, 0 for an infinite one
+	 *@param chunkRows, chunkCols size of a bounded map in chunks, 0 for an infinite one
+	 *@param slots number of slots
+	 *@param life life of every tile, by index (absolute gets and puts only, so threads can share them)
+	 *@param flags ALIVE and MOUNTAIN bits of every tile, by index
+	 *@param sprite index in Sprites of the image of every tile, by index.
+	 *       Written by the simulation thread, read by TileLayer while drawing.
+	 *@param slotChunkRow, slotChunkCol the chunk in each slot
+	 *@param slotModified true for a slot whose tiles changed since it was filled
+	 *@param window the chunks index() can see, replaced (not changed) when the king moves
+	 * The rest is for infinite maps and only used on the simulation thread:
+	 *@param resident slot of every chunk that has one, by chunk key (see key())
+	 *@param slotUsed value of uses when each slot was last in the window, -1 for an empty slot
+	 *@param uses bumped every time the window moves
+	 *@param stored evicted chunks that changed, compressed, by chunk key. Never shrinks, see the class comment
+	 *@param pending chunks being generated in the background, by chunk key
+	 *@param counted chunks whose tiles were added to the world's tile counts. Never shrinks, see the class comment
+	 *@param frozen the tiles being saved, see freeze(). Simulation thread only.
+	 **/
+	static final byte ALIVE = 1;
+	static final byte MOUNTAIN = 2;
+	static final int LIFE_SCALE = 10;
+	static final int MAX_LIFE = 100 * LIFE_SCALE;
+	static final int CHUNK_SHIFT = 5;
+	static final int CHUNK_TILES = 1 << CHUNK_SHIFT;
+	static final int CHUNK_AREA = CHUNK_TILES * CHUNK_TILES;
+	static final int OFF_MAP = -2;
+	static final int ACTIVE_RADIUS = 1;
+	static final int PREFETCH_RADIUS = 2;
+	static final int CACHED_CHUNKS = 36;
+	static ExecutorService generators = null;
+	World world;
+	boolean infinite;
+	int rows;
+	int cols;
+	int chunkRows;
+	int chunkCols;
+	int slots;
+	ShortBuffer life;
+	ByteBuffer flags;
+	ByteBuffer sprite;
+	int[] slotChunkRow;
+	int[] slotChunkCol;
+	boolean[] slotModified;
+	volatile Window window;
+	HashMap<Long, Integer> resident = new HashMap<Long, Integer>();
+	long[] slotUsed;
+	long uses = 0;
+	HashMap<Long, byte[]> stored = new HashMap<Long, byte[]>();
+	HashMap<Long, Future<Chunk>> pending = new HashMap<Long, Future<Chunk>>();
+	HashSet<Long> counted = new HashSet<Long>();
+	Frozen frozen = null;
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * The chunks index() can see: a rectangle of chunks from (top, left),
+	 * rows x cols of them, and the slot of each, row by row.
+	 **/
+	static class Window{
+		int top;
+		int left;
+		int rows;
+		int cols;
+		int[] slots;
+
+		Window(int top, int left, int rows, int cols){
+			this.top = top;
+			this.left = left;
+			this.rows = rows;
+			this.cols = cols;
+			slots = new int[rows * cols];
+		}
+	}// class Window
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * The tiles of one chunk outside the map's arrays: made by
+	 * World.generateChunk() (maybe on a background thread), or unpacked
+	 * from the compressed copy of an evicted chunk.
+	 * pack() compresses it, unpack() undoes that.
+	 **/
+	static class Chunk{
+		short[] life = new short[CHUNK_AREA];
+		byte[] flags = new byte[CHUNK_AREA];
+		byte[] sprite = new byte[CHUNK_AREA];
+
+		byte[] pack(){
+			byte[] raw = new byte[CHUNK_AREA * 4];
+			for(int i = 0; i < CHUNK_AREA; i++){
+				raw[2*i] = (byte)(life[i] >> 8);
+				raw[2*i + 1] = (byte)life[i];
+			}
+			System.arraycopy(flags, 0, raw, CHUNK_AREA * 2, CHUNK_AREA);
+			System.arraycopy(sprite, 0, raw, CHUNK_AREA * 3, CHUNK_AREA);
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			deflater.setInput(raw);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			while(!deflater.finished()){
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			deflater.end();
+			return out.toByteArray();
+		}// pack ()
+
+		static Chunk unpack(byte[] packed){
+			byte[] raw = new byte[CHUNK_AREA * 4];
+			Inflater inflater = new Inflater();
+			inflater.setInput(packed);
+			try{
+				int read = 0;
+				while(read < raw.length && !inflater.finished()){
+					read += inflater.inflate(raw, read, raw.length - read);
+				}
+			}
+			catch(DataFormatException e){
+				throw new IllegalStateException("Stored chunk is corrupt", e); //only this class writes them
+			}
+			finally{
+				inflater.end();
+			}
+			Chunk chunk = new Chunk();
+			for(int i = 0; i < CHUNK_AREA; i++){
+				chunk.life[i] = (short)(((raw[2*i] & 0xFF) << 8) | (raw[2*i + 1] & 0xFF));
+			}
+			System.arraycopy(raw, CHUNK_AREA * 2, chunk.flags, 0, CHUNK_AREA);
+			System.arraycopy(raw, CHUNK_AREA * 3, chunk.sprite, 0, CHUNK_AREA);
+			return chunk;
+		}// unpack ()
+	}// class Chunk
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * The changed chunks of the map as they were when freeze() was called,
+	 * for saving (see SaveGame): every chunk that isn't the way it was
+	 * generated. Copied out of the slots a few at a time, and right away for a
+	 * slot that is about to change, so no tick has to copy them all.
+	 *@param keys chunk key of every chunk to copy
+	 *@param slots the slot each of them is in
+	 *@param copies the copies, null until made
+	 *@param position by slot, where the slot is in slots, -1 if it isn't being copied
+	 *@param next the next copy made by copyFrozen()
+	 *@param stored compressed chunks of an infinite map (not in slots), a copy of TileMap.stored
+	 **/
+	static class Frozen{
+		long[] keys;
+		int[] slots;
+		Chunk[] copies;
+		int[] position;
+		int next = 0;
+		HashMap<Long, byte[]> stored;
+	}// class Frozen
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * TileMap constructor. A map rows x cols tiles in size, or an infinite
+	 * one if either is 0. The tiles are empty (dead, no life), generateAll()
+	 * or follow() fill them in.
+	 * A bounded map can be given the buffers to keep its tiles in, each
+	 * tiles(rows, cols) long, otherwise they are on the heap.
+	 * Every map belongs to a world, see world.
+	 **/
+	public TileMap(World world, int rows, int cols){
+		this(world, rows, cols, null, null, null);
+	}// TileMap constructor
+
+	public TileMap(World world, int rows, int cols, ShortBuffer life, ByteBuffer flags, ByteBuffer sprite){
+		if(world == null){
+			throw new IllegalArgumentException("A TileMap needs the world it is in");
+		}
+		this.world = world;
+		infinite = rows <= 0 || cols <= 0;
+		if(infinite){
+			slots = CACHED_CHUNKS;
+			window = new Window(0, 0, 0, 0);
+		}
+		else{
+			this.rows = rows;
+			this.cols = cols;
+			chunkRows = (rows + CHUNK_TILES - 1) / CHUNK_TILES;
+			chunkCols = (cols + CHUNK_TILES - 1) / CHUNK_TILES;
+			slots = chunkRows * chunkCols;
+			window = new Window(0, 0, chunkRows, chunkCols);
+		}
+		if(life == null){
+			useBuffers(ShortBuffer.allocate(slots * CHUNK_AREA), ByteBuffer.allocate(slots * CHUNK_AREA), ByteBuffer.allocate(slots * CHUNK_AREA));
+		}
+		else{
+			useBuffers(life, flags, sprite);
+		}
+		slotChunkRow = new int[slots];
+		slotChunkCol = new int[slots];
+		slotModified = new boolean[slots];
+		slotUsed = new long[slots];
+		for(int s = 0; s < slots; s++){
+			slotUsed[s] = -1;
+			if(!infinite){ //every chunk has its own slot, in order
+				slotChunkRow[s] = s / chunkCols;
+				slotChunkCol[s] = s % chunkCols;
+				window.slots[s] = s;
+			}
+		}
+	}// TileMap constructor
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * tiles() is how many tiles the buffers of a rows x cols map hold: whole
+	 * chunks, so a bit more than rows * cols.
+	 * useBuffers() moves the tiles to other buffers that already hold them,
+	 * e.g. the same file mapped another way. Not while the simulation runs.
+	 **/
+	static long tiles(int rows, int cols){
+		long chunks = (long)((rows + CHUNK_TILES - 1) / CHUNK_TILES) * ((cols + CHUNK_TILES - 1) / CHUNK_TILES);
+		return chunks * CHUNK_AREA;
+	}// tiles ()
+
+	public void useBuffers(ShortBuffer life, ByteBuffer flags, ByteBuffer sprite){
+		this.life = life;
+		this.flags = flags;
+		this.sprite = sprite;
+	}// useBuffers ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Indices. index() of a tile outside the map or the window is OFF_MAP.
+	 * indexAt() is the tile under a position in the world (world units, not tiles).
+	 * row() and col() are where the tile at an index is, in tiles. They take
+	 * only real indices, not OFF_MAP (see Tile.row()).
+	 * key() identifies a chunk by its row and column in chunks.
+	 **/
+	public int index(int row, int col){
+		if(!infinite && (row < 0 || col < 0 || row >= rows || col >= cols)){
+			return OFF_MAP;
+		}
+		Window w = window;
+		int windowRow = (row >> CHUNK_SHIFT) - w.top; //>> rounds down, negative rows too
+		int windowCol = (col >> CHUNK_SHIFT) - w.left;
+		if(windowRow < 0 || windowCol < 0 || windowRow >= w.rows || windowCol >= w.cols){
+			return OFF_MAP;
+		}
+		int slot = w.slots[windowRow * w.cols + windowCol];
+		return (slot << (2 * CHUNK_SHIFT)) | ((row & (CHUNK_TILES - 1)) << CHUNK_SHIFT) | (col & (CHUNK_TILES - 1));
+	}// index ()
+
+	public int row(int index){
+		return (slotChunkRow[index >> (2 * CHUNK_SHIFT)] << CHUNK_SHIFT) + ((index >> CHUNK_SHIFT) & (CHUNK_TILES - 1));
+	}// row ()
+
+	public int col(int index){
+		return (slotChunkCol[index >> (2 * CHUNK_SHIFT)] << CHUNK_SHIFT) + (index & (CHUNK_TILES - 1));
+	}// col ()
+
+	public int indexAt(double x, double y){
+		return index((int)Math.floor(y / Tile.height), (int)Math.floor(x / Tile.width));
+	}// indexAt ()
+
+	static long key(int chunkRow, int chunkCol){
+		return ((long)chunkRow << 32) | (chunkCol & 0xFFFFFFFFL);
+	}// key ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * get() returns a view of the tile at (row, col).
+	 **/
+	public Tile get(int row, int col){
+		return new Tile(this, index(row, col));
+	}// get ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Reading a tile by index. OFF_MAP reads as a mountain.
+	 **/
+	public boolean isAlive(int index){
+		return index >= 0 && (flags.get(index) & ALIVE) != 0;
+	}// isAlive ()
+
+	public boolean isMountain(int index){
+		return index < 0 || (flags.get(index) & MOUNTAIN) != 0;
+	}// isMountain ()
+
+	public double getLife(int index){
+		return (index < 0) ? 0 : life.get(index) / (double)LIFE_SCALE;
+	}// getLife ()
+
+	public int getSprite(int index){
+		return (index < 0) ? Sprites.MTN : sprite.get(index);
+	}// getSprite ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * reduceLife() takes amount 1/LIFE_SCALE of a point from a live tile (as
+	 * much as it has) and updates its sprite, which kills it when no life is left.
+	 **/
+	public void reduceLife(int index, int amount){
+		short tileLife = (index < 0) ? 0 : life.get(index);
+		if(tileLife > 0 && amount > 0 && isAlive(index)){
+			touch(index >> (2 * CHUNK_SHIFT));
+			life.put(index, (short)Math.max(0, tileLife - amount));
+			updateSprite(index);
+		}
+	}// reduceLife ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Tiles display different sprites as life level changes. Greener sprites
+	 * are more alive, yellower ones more dead. Dead tiles are brown/yellow.
+	 * spriteFor() is the sprite of a live tile with the given life.
+	 **/
+	public void updateSprite(int index){
+		if(!isAlive(index)){
+			return;
+		}
+		short tileLife = life.get(index);
+		if(tileLife > 0){
+			setSprite(index, spriteFor(tileLife));
+		}
+		else{
+			makeDead(index);
+		}
+	}// updateSprite ()
+
+	static int spriteFor(int tileLife){
+		if(tileLife >= 75 * LIFE_SCALE){
+			return Sprites.LIVE4;
+		}
+		else if(tileLife >= 50 * LIFE_SCALE){
+			return Sprites.LIVE3;
+		}
+		else if(tileLife >= 25 * LIFE_SCALE){
+			return Sprites.LIVE2;
+		}
+		return Sprites.LIVE1;
+	}// spriteFor ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * setSprite() changes the sprite of a tile. If it really changed, the chunk
+	 * of the world's TileLayer the tile is in gets redrawn.
+	 **/
+	public void setSprite(int index, int newSprite){
+		if(sprite.get(index) == newSprite){
+			return;
+		}
+		touch(index >> (2 * CHUNK_SHIFT));
+		sprite.put(index, (byte)newSprite);
+		if(world.tileLayer != null){ //still null while the map is being generated
+			world.tileLayer.markDirty(index);
+		}
+	}// setSprite ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * makeDead() kills a tile: its sprite changes to 1 of the 2 dead sprites
+	 * and 0-2 new locusts are spawned at a random position near the king.
+	 **/
+	public void makeDead(int index){
+		if(isAlive(index)){
+			world.tileDied(row(index), col(index)); //keeps the world's alive/dead counts up to date
+		}
+		touch(index >> (2 * CHUNK_SHIFT));
+		life.put(index, (short)0);
+		flags.put(index, (byte)(flags.get(index) & ~ALIVE));
+		Random r = world.random;
+		if(r.nextDouble() > .5){
+			setSprite(index, Sprites.DEAD1);
+		}
+		else{
+			setSprite(index, Sprites.DEAD2);
+		}
+		int boidNum = r.nextInt(3);
+		for(int i = 0; i < boidNum; i++){
+			Locust.spawn(world, (r.nextDouble()-.5)*400 + world.kingBoid.position.x, (r.nextDouble()-.5)*400 + world.kingBoid.position.y);
+		}
+	}// makeDead ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * generateAll() generates every chunk of a bounded map, in parallel.
+	 **/
+	public void generateAll(){
+		IntStream.range(0, slots).parallel().forEach(s -> fill(s, world.generateChunk(slotChunkRow[s], slotChunkCol[s], rows, cols)));
+	}// generateAll ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * follow() moves the window of an infinite map onto the chunks around
+	 * (x, y), the king's position in world units, and starts generating the
+	 * chunks around those. Does nothing for a bounded map, or when the king
+	 * is still in the same chunk. Simulation thread only.
+	 **/
+	public void follow(double x, double y){
+		if(!infinite){
+			return;
+		}
+		int centerRow = (int)Math.floor(y / (Tile.height * CHUNK_TILES));
+		int centerCol = (int)Math.floor(x / (Tile.width * CHUNK_TILES));
+		Window old = window;
+		if(old.rows > 0 && old.top == centerRow - ACTIVE_RADIUS && old.left == centerCol - ACTIVE_RADIUS){
+			return;
+		}
+		uses++;
+		int size = 2*ACTIVE_RADIUS + 1;
+		Window w = new Window(centerRow - ACTIVE_RADIUS, centerCol - ACTIVE_RADIUS, size, size);
+		for(int i = 0; i < w.slots.length; i++){ //chunks that already have a slot keep it, and can't be evicted below
+			Integer slot = resident.get(key(w.top + i / size, w.left + i % size));
+			w.slots[i] = (slot == null) ? -1 : slot;
+			if(slot != null){
+				slotUsed[slot] = uses;
+			}
+		}
+		for(int i = 0; i < w.slots.length; i++){
+			if(w.slots[i] < 0){
+				w.slots[i] = load(w.top + i / size, w.left + i % size);
+			}
+		}
+		window = w;
+		prefetch(centerRow, centerCol);
+	}// follow ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * load() gives a chunk a slot and fills it in: from its compressed copy
+	 * if it was evicted after changing, from the background thread if it was
+	 * prefetched (waiting for it if it isn't done), or generated right here.
+	 * Chunks are counted into the world's tile counts the first time they load.
+	 **/
+	private int load(int chunkRow, int chunkCol){
+		long key = key(chunkRow, chunkCol);
+		byte[] packed = stored.get(key);
+		Future<Chunk> future = pending.remove(key);
+		Chunk chunk = null;
+		if(packed != null){
+			chunk = Chunk.unpack(packed);
+		}
+		else if(future != null){
+			try{
+				chunk = future.get();
+			}
+			catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			catch(ExecutionException e){
+				throw new IllegalStateException("Generating chunk " + chunkRow + ", " + chunkCol + " failed", e.getCause());
+			}
+		}
+		if(chunk == null){
+			chunk = world.generateChunk(chunkRow, chunkCol, 0, 0);
+		}
+		int slot = evict();
+		slotChunkRow[slot] = chunkRow;
+		slotChunkCol[slot] = chunkCol;
+		slotUsed[slot] = uses;
+		resident.put(key, slot);
+		fill(slot, chunk);
+		if(packed == null && counted.add(key)){
+			world.chunkLoaded(chunk);
+		}
+		return slot;
+	}// load ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * evict() returns an empty slot, or else empties the slot that was in the
+	 * window longest ago (never one in the window being made, see follow()).
+	 * A chunk that changed is compressed into stored first.
+	 **/
+	private int evict(){
+		int oldest = -1;
+		for(int s = 0; s < slots; s++){
+			if(slotUsed[s] < uses && (oldest < 0 || slotUsed[s] < slotUsed[oldest])){
+				oldest = s;
+			}
+		}
+		if(slotUsed[oldest] >= 0){
+			long key = key(slotChunkRow[oldest], slotChunkCol[oldest]);
+			if(slotModified[oldest]){
+				stored.put(key, copy(oldest).pack());
+			}
+			resident.remove(key);
+		}
+		return oldest;
+	}// evict ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * prefetch() has the background threads generate the chunks within
+	 * PREFETCH_RADIUS of the given chunk that aren't loaded, stored or
+	 * already being generated, nearest first, and drops the ones being
+	 * generated that are further than that.
+	 **/
+	private void prefetch(int centerRow, int centerCol){
+		Iterator<Map.Entry<Long, Future<Chunk>>> it = pending.entrySet().iterator();
+		while(it.hasNext()){
+			Map.Entry<Long, Future<Chunk>> entry = it.next();
+			int row = (int)(entry.getKey() >> 32);
+			int col = (int)(long)entry.getKey();
+			if(Math.max(Math.abs(row - centerRow), Math.abs(col - centerCol)) > PREFETCH_RADIUS){
+				entry.getValue().cancel(false);
+				it.remove();
+			}
+		}
+		ExecutorService pool = generators();
+		for(int ring = 1; ring <= PREFETCH_RADIUS; ring++){
+			for(int row = centerRow - ring; row <= centerRow + ring; row++){
+				for(int col = centerCol - ring; col <= centerCol + ring; col++){
+					if(Math.max(Math.abs(row - centerRow), Math.abs(col - centerCol)) != ring){
+						continue; //inner rings were done already
+					}
+					long key = key(row, col);
+					if(!resident.containsKey(key) && !stored.containsKey(key) && !pending.containsKey(key)){
+						int chunkRow = row;
+						int chunkCol = col;
+						pending.put(key, pool.submit(() -> world.generateChunk(chunkRow, chunkCol, 0, 0)));
+					}
+				}
+			}
+		}
+	}// prefetch ()
+
+	private static synchronized ExecutorService generators(){
+		if(generators == null){
+			int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1); //leave a core for the simulation
+			generators = Executors.newFixedThreadPool(threads, task -> {
+				Thread thread = new Thread(task, "chunk generator");
+				thread.setDaemon(true); //doesn't keep the game running
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
+		}
+		return generators;
+	}// generators ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Saving the map without stopping the game for it (see SaveGame).
+	 * freeze() starts a copy-on-write snapshot of every changed chunk.
+	 * copyFrozen() copies up to budget chunks that aren't copied yet, and
+	 * returns the snapshot once every chunk is copied (null before that).
+	 * touch() is called before a tile of a slot changes: the slot is copied
+	 * first if it is frozen, preserve() does that. Simulation thread only.
+	 **/
+	public void freeze(){
+		int changed = 0;
+		for(int s = 0; s < slots; s++){
+			if(slotModified[s]){ //an empty slot was never changed
+				changed++;
+			}
+		}
+		Frozen f = new Frozen();
+		f.keys = new long[changed];
+		f.slots = new int[changed];
+		f.copies = new Chunk[changed];
+		f.position = new int[slots];
+		f.stored = new HashMap<Long, byte[]>(stored); //the compressed chunks are never changed, only replaced
+		int i = 0;
+		for(int s = 0; s < slots; s++){
+			f.position[s] = -1;
+			if(slotModified[s]){
+				f.keys[i] = key(slotChunkRow[s], slotChunkCol[s]);
+				f.slots[i] = s;
+				f.position[s] = i++;
+			}
+		}
+		frozen = f;
+	}// freeze ()
+
+	public Frozen copyFrozen(int budget){
+		Frozen f = frozen;
+		while(f.next < f.slots.length && budget > 0){
+			if(f.copies[f.next] == null){
+				f.copies[f.next] = copy(f.slots[f.next]);
+				budget--;
+			}
+			f.next++;
+		}
+		if(f.next < f.slots.length){
+			return null;
+		}
+		frozen = null;
+		return f;
+	}// copyFrozen ()
+
+	/**
+	 * restore() puts back a chunk that was saved (see SaveGame): into its
+	 * slot for a bounded map, with the evicted chunks for an infinite one,
+	 * which load it when the king gets near. Simulation thread only.
+	 **/
+	public void restore(int chunkRow, int chunkCol, Chunk chunk){
+		if(infinite){
+			stored.put(key(chunkRow, chunkCol), chunk.pack());
+			return;
+		}
+		int slot = chunkRow * chunkCols + chunkCol;
+		fill(slot, chunk);
+		slotModified[slot] = true;
+	}// restore ()
+
+	private void touch(int slot){
+		if(frozen != null){
+			preserve(slot);
+		}
+		slotModified[slot] = true;
+	}// touch ()
+
+	private void preserve(int slot){
+		int i = frozen.position[slot];
+		if(i >= 0 && frozen.copies[i] == null){
+			frozen.copies[i] = copy(slot);
+		}
+	}// preserve ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * fill() copies a chunk into a slot, and has TileLayer redraw it.
+	 * copy() copies a slot out.
+	 **/
+	private void fill(int slot, Chunk chunk){
+		if(frozen != null){
+			preserve(slot);
+		}
+		int start = slot * CHUNK_AREA;
+		life.put(start, chunk.life);
+		flags.put(start, chunk.flags);
+		sprite.put(start, chunk.sprite);
+		slotModified[slot] = false;
+		if(world.map == this && world.tileLayer != null){ //generateAll() fills a map before the world has it
+			world.tileLayer.markSlotDirty(slot); //after the tiles are in, see TileLayer.chunkImage()
+		}
+	}// fill ()
+
+	private Chunk copy(int slot){
+		int start = slot * CHUNK_AREA;
+		Chunk chunk = new Chunk();
+		life.get(start, chunk.life);
+		flags.get(start, chunk.flags);
+		sprite.get(start, chunk.sprite);
+		return chunk;
+	}// copy ()
+	//=======================================================================
+
+}// class TileMap
+//=======================================================================
@@ -12,8 +12,13 @@
 //=======================================================================
 // IMPORTS
 import java.awt.Graphics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 import java.awt.event.MouseListener;//so we can listen to the mouse
 import java.awt.event.MouseEvent;
 //=======================================================================
@@ -26,38 +31,112 @@ class World{
 	
 	//=======================================================================
     /**
-     *@param worldDimensions dimensions of the world in tiles
+     *@param worldDimensions dimensions of the world in tiles, 0 x 0 for an infinite world
      *@param mainInstance instance of Main
      *@param initNumBoids starting number of locusts
-     *@param numBoids int keeping track of the current number of locusts
-     *@param boids ArrayList of all the locusts
+     *@param swarm all the locusts, swarm.count is the current number of locusts
+     *@param seed the seed the whole game is made from, the same seed (and the same mouse movements) give the same game
+     *@param mapSeed seed of the map, drawn from seed
+     *@param random random numbers for everything that happens after the map is made (spawns, starting velocities),
+     *       drawn from seed. Only used by the simulation thread, and only in serial code.
      *@param kingBoid contains the instance of KingBoid
-     *@param map 2D array of the tiles
+     *@param map all the tiles, see TileMap
+     *@param aliveTiles number of alive tiles, kept up to date by tileDied()
+     *@param deadTiles number of dead tiles that aren't mountains
+     *@param mountainTiles number of mountain tiles
+     *       In an infinite world these count the tiles of the chunks generated so far.
+     *@param REGION_TILES width and height of a region in tiles, regions have their own counts (bounded worlds only)
+     *@param regionAlive alive tiles in each region, by region index (see regionIndex())
+     *@param regionDead dead tiles that aren't mountains in each region
+     *@param regionMountain mountain tiles in each region
+     *@param MARGIN tiles around a chunk whose seeds are looked at when generating it, see generateChunk()
+     *@param tileLayer the map drawn into cached chunk images
+     *@param swarmRenderer draws the locusts, made the first time they are drawn
+     *@param grid spatial hash of the locusts, used to find neighbors while flocking
+     *@param swarmPool threads used by updateSwarm(), null for a serial update
+     *@param ticks number of ticks run so far
+     *@param biteCarry part of a bite the locusts have built up towards the next one, see updateSwarm()
+     *@param snapshots where a RenderSnapshot is published after every tick, null when nothing is drawn
+     *@param autosave saves the game every so often while it runs (see SaveGame), null for no autosaves
      **/
     Pair worldDimensions;
 	Main mainInstance;
     
 	int initNumBoids = 1; //starting number of locusts to be generated
-	int numBoids = 0; //keeps track of how many locusts there are
-	public ArrayList<Locust> boids = new ArrayList<Locust>(); //ArrayList containing alll the locusts
+	public Swarm swarm = new Swarm(64); //positions and velocities of all the locusts
     
-	KingBoid kingBoid = new KingBoid(2000,2000,this); 
-	public Tile[][] map; // 2D array will contain all the tiles. Their positions in the array represent their positions in the game
+	long seed;
+	long mapSeed;
+	Random random;
+	KingBoid kingBoid; 
+	public TileMap map; // all the tiles. Their rows and columns in the map are their positions in the game
+	int aliveTiles = 0;
+	int deadTiles = 0;
+	int mountainTiles = 0;
+	static final int REGION_TILES = 16;
+	int regionRows;
+	int regionCols;
+	int[] regionAlive;
+	int[] regionDead;
+	int[] regionMountain;
+	static final int MARGIN = 8;
+	TileLayer tileLayer;
+	SwarmRenderer swarmRenderer = null;
+	SpatialGrid grid = new SpatialGrid(Locust.SIGHT_RADIUS);
+	ForkJoinPool swarmPool = null;
+	long ticks = 0;
+	double biteCarry = 0;
+	RenderSnapshot.Exchange snapshots = null;
+	SaveGame.Autosave autosave = null;
 	//=======================================================================
 
 	
 	//=======================================================================
     /**
      * Constructor for world. Sets fields, calls generateMap() and 
-	 * creates the initial number of locusts near the king
+	 * creates the initial number of locusts near the king.
+	 * Without a seed a random one is picked, it is kept in the seed field.
+	 * A world of 0 x 0 tiles is infinite: only the chunks around the king are
+	 * generated to start with, the rest as the king flies to them (see TileMap).
+	 * With a TileFile the map is the one in the file, generated into it the first
+	 * time (see TileFile). The world has to have the file's seed and size then.
      **/
     public World(Pair worldDimensions, Main mainInstance){
+		this(worldDimensions, mainInstance, new Random().nextLong());
+	} //World() constructor
+	
+    public World(Pair worldDimensions, Main mainInstance, long seed){
+		this(worldDimensions, mainInstance, seed, null);
+	} //World() constructor
+
+    public World(Pair worldDimensions, Main mainInstance, long seed, TileFile tileFile){
 		this.worldDimensions = worldDimensions;
-		map = generateMap(worldDimensions.x, worldDimensions.y);
+		this.seed = seed;
+		Random seeds = new Random(seed); //the map and the simulation get their own streams, so generating a map doesn't change what happens after it
+		mapSeed = seeds.nextLong();
+		random = new Random(seeds.nextLong());
+		kingBoid = new KingBoid(2000,2000,this);
+		if(tileFile != null){
+			try{
+				map = tileFile.load(this); //counts the tiles too
+			}
+			catch(IOException e){
+				throw new UncheckedIOException("Could not load tile file: " + e.getMessage(), e);
+			}
+		}
+		else{
+			map = generateMap(worldDimensions.x, worldDimensions.y);
+			if(map.infinite){
+				map.follow(kingBoid.position.x, kingBoid.position.y); //counts the tiles as it loads them
+			}
+			else{
+				countTiles();
+			}
+		}
+		tileLayer = new TileLayer(this);
 		this.mainInstance = mainInstance;
-		Random r = new Random();
 		for(int i = 0; i < initNumBoids; i++){ //create boids near the king
-		    boids.add(new Locust((r.nextDouble()-.5)*400 + kingBoid.position.x, (r.nextDouble()-.5)*400 + kingBoid.position.y, this));
+		    Locust.spawn(this, (random.nextDouble()-.5)*400 + kingBoid.position.x, (random.nextDouble()-.5)*400 + kingBoid.position.y);
 		}
 	
 	} //World() constructor
@@ -67,47 +146,140 @@ class World{
 	//=======================================================================
 	/**
 	*Returns the percent of tiles left alive. Calls win() in Main if none are left.
+	*Reads the running counts, so it doesn't have to look at the map.
 	**/
 	public int getPercentAlive(){ 
-		int alive = 0;
-		int dead = 0;
-		for(int i = 0; i < map.length; i++){ //iterates through all tiles
-			for(int j = 0; j < map[0].length; j++){
-				if(map[i][j].alive){
-					alive++;
-				}
-				else if(map[i][j].isMountain == false && map[i][j].alive == false){ //mountains don't count towards the dead tile count
-					dead++;
-				}
-			}
-		}
+		int alive = aliveTiles;
+		int dead = deadTiles; //mountains don't count towards the dead tile count
 		double percent = (((double)alive/(double)(alive+dead))*100);
 		int percentInt = (int)percent;
-		if(alive == 0){mainInstance.win();} //if there are none alive win
+		if(alive == 0 && mainInstance != null){mainInstance.win();} //if there are none alive win
 		return percentInt;
 	} //getPercentAlive()
 	//=======================================================================
+	
+	
+	//=======================================================================
+	/**
+	*Counts alive, dead and mountain tiles, for the whole map and for every region.
+	*Runs once after the map is generated, tileDied() keeps the counts up to date after that.
+	*makeRegions() makes the region count arrays, all zero, for a map of worldDimensions.
+	**/
+	void countTiles(){
+		makeRegions();
+		aliveTiles = 0;
+		deadTiles = 0;
+		mountainTiles = 0;
+		for(int i = 0; i < map.rows; i++){
+			for(int j = 0; j < map.cols; j++){
+				int region = regionIndex(i, j);
+				int tile = map.index(i, j);
+				if(map.isAlive(tile)){
+					aliveTiles++;
+					regionAlive[region]++;
+				}
+				else if(map.isMountain(tile)){
+					mountainTiles++;
+					regionMountain[region]++;
+				}
+				else{
+					deadTiles++;
+					regionDead[region]++;
+				}
+			}
+		}
+	} //countTiles()
+
+	void makeRegions(){
+		regionRows = ((int)worldDimensions.x + REGION_TILES - 1) / REGION_TILES;
+		regionCols = ((int)worldDimensions.y + REGION_TILES - 1) / REGION_TILES;
+		regionAlive = new int[regionRows * regionCols];
+		regionDead = new int[regionRows * regionCols];
+		regionMountain = new int[regionRows * regionCols];
+	} //makeRegions()
+	
+	/**
+	*Called by TileMap.makeDead() when the alive tile at (row, col) dies.
+	**/
+	public void tileDied(int row, int col){
+		aliveTiles--;
+		deadTiles++;
+		if(regionAlive != null){
+			int region = regionIndex(row, col);
+			regionAlive[region]--;
+			regionDead[region]++;
+		}
+	} //tileDied()
+	
+	/**
+	*Called by TileMap when a chunk of an infinite map is loaded for the first time, adds its tiles to the counts.
+	**/
+	public void chunkLoaded(TileMap.Chunk chunk){
+		for(int i = 0; i < TileMap.CHUNK_AREA; i++){
+			if((chunk.flags[i] & TileMap.ALIVE) != 0){
+				aliveTiles++;
+			}
+			else if((chunk.flags[i] & TileMap.MOUNTAIN) != 0){
+				mountainTiles++;
+			}
+			else{
+				deadTiles++;
+			}
+		}
+	} //chunkLoaded()
+	
+	/**
+	*Index into the region count arrays of the region the tile at (row, col) is in.
+	*Regions are REGION_TILES x REGION_TILES tiles, so region (r, c) has index r*regionCols + c.
+	**/
+	public int regionIndex(int row, int col){
+		return (row / REGION_TILES) * regionCols + (col / REGION_TILES);
+	} //regionIndex()
+	//=======================================================================
 
 	
 	//=======================================================================
 	/**
 	*Calling the draw functions of all the Boids and Tiles.
+	*Main draws from a RenderSnapshot, the simulation may be in the middle of a tick while it draws.
+	*alpha is how far the frame is between the snapshot's tick and the next one (0 to 1), everything is
+	*drawn that fraction of the way from where it was at the start of the tick to where it is after it.
+	*Without a snapshot the world is drawn as it is now, only do that on the simulation thread.
 	**/
-    public void drawBoids(Graphics g, Main mainInstance){ //calls every locust's draw() method as well as the king's
+    public void drawBoids(Graphics g, Main mainInstance){
+		drawBoids(g, mainInstance, swarm, kingBoid.previousPosition, kingBoid.position, kingBoid.velocity, 1);
+    }
 	
-		for (int i = 0; i < numBoids; i++){
-		    boids.get(i).draw(g, this);
+    public void drawBoids(Graphics g, Main mainInstance, RenderSnapshot snapshot, double alpha){
+		drawBoids(g, mainInstance, snapshot.swarm, snapshot.kingPrevious, snapshot.kingPosition, snapshot.kingVelocity, alpha);
+    }
+	
+    private void drawBoids(Graphics g, Main mainInstance, Swarm swarm, Pair kingPrevious, Pair kingPosition, Pair kingVelocity, double alpha){ //calls every locust's draw() method as well as the king's
+	
+		double left = lerp(kingPrevious.x, kingPosition.x, alpha) - (Main.WIDTH/2); //the display follows the king
+		double top = lerp(kingPrevious.y, kingPosition.y, alpha) - (Main.HEIGHT/2);
+		if(swarmRenderer == null){
+			swarmRenderer = new SwarmRenderer();
 		}
-		kingBoid.draw(g, mainInstance);
+		swarmRenderer.draw(g, swarm, left, top, alpha); //all the locusts in one go
+		kingBoid.draw(g, mainInstance, kingVelocity);
 		
     }
 	
-	public void drawTiles(Graphics g, Main mainInstance){  //iterates through all the tiles and calls their draw functions.
-		for(int i = 0; i < map.length; i++){
-			for(int j = 0; j < map[0].length; j++){
-				map[i][j].draw(g, kingBoid.position, mainInstance);
-			}
-		}
+	/**
+	*Draws the tiles in view, centered on the king. tileLayer keeps the map drawn in chunks,
+	*so this is a few image blits.
+	**/
+	public void drawTiles(Graphics g, Main mainInstance){
+		tileLayer.draw(g, kingBoid.position.x, kingBoid.position.y, mainInstance);
+	}
+	
+	public void drawTiles(Graphics g, Main mainInstance, RenderSnapshot snapshot, double alpha){
+		tileLayer.draw(g, lerp(snapshot.kingPrevious.x, snapshot.kingPosition.x, alpha), lerp(snapshot.kingPrevious.y, snapshot.kingPosition.y, alpha), mainInstance);
+	}
+	
+	private static double lerp(double from, double to, double alpha){
+		return from + (to - from) * alpha;
 	}
 	//=======================================================================
 	
@@ -115,63 +287,153 @@ class World{
 	//=======================================================================
 	/**
 	*Calling the update functions of all the Boids.
+	*mainInstance is null when there is no window (see Headless), the king is steered some other way then.
+	*Publishes a snapshot for drawing after the tick when there is someone to draw it (snapshots isn't null),
+	*which is also when getPercentAlive() checks for a win.
 	**/
     public void updateBoids(double time){ //calls every boid's update() method. If there aren't any locusts left calls the lose() method of Main. 
-		kingBoid.update(time, map, mainInstance.mousePosition);//here's where we call the mouse listener from the main method
-		for (int i = 0; i < numBoids; i ++){
-		    boids.get(i).update(time, map, boids, kingBoid);
+		Pair mousePosition = (mainInstance == null) ? null : mainInstance.mousePosition;
+		map.follow(kingBoid.position.x, kingBoid.position.y); //an infinite map loads the chunks around the king
+		kingBoid.update(time, map, mousePosition);//here's where we call the mouse listener from the main method
+		updateSwarm(time);
+		ticks++;
+		if(autosave != null){
+			autosave.tick(this);
 		}
-		if(this.numBoids == 0){
+		if(swarm.count == 0 && mainInstance != null){
 			mainInstance.lose();
 		}
+		if(snapshots != null){
+			snapshots.publish(this, ticks);
+		}
+	}
+	
+	/**
+	*Swarm-level update phase, run once per tick:
+	* 1. every locust's new velocity is computed with flock() from the current velocities (front buffer)
+	*    and written to the swarm's back buffer, so no locust sees a half updated swarm.
+	* 2. the buffers are swapped and every locust moves.
+	* 3. tile drain, locust life, deaths and spawns are applied one locust at a time in swarm order.
+	*Phases 1 and 2 only write to their own locust, so they are split across swarmPool when there is one.
+	*Phase 3 is always serial, which keeps the result the same no matter how many threads are used.
+	*Locusts spawned in phase 3 move with their starting velocity next tick.
+	*Tile effects go by game time like movement: step is how many ticks at Main.FPS this tick stands for
+	*(1 at the default tick rate), locust life changes by step times as much, and every locust takes as
+	*many whole bites of a tile as have built up, the rest of a bite carries over in biteCarry.
+	**/
+	public void updateSwarm(double time){
+		int n = swarm.count;
+		swarm.savePositions(); //where the locusts were, for drawing frames between ticks
+		grid.rebuild(swarm.x, swarm.y, n);
+		
+		forEachLocust(n, i -> Locust.flock(swarm, grid, kingBoid, i));
+		swarm.swapVelocities();
+		forEachLocust(n, i -> Locust.move(swarm, i, time, map));
+		
+		double step = time * Main.FPS;
+		biteCarry += step;
+		int bites = (int)biteCarry;
+		biteCarry -= bites;
+		for (int i = 0; i < swarm.count; i ++){
+		    Locust.applyTileEffects(this, i, bites, step);
+		}
+	}
+	
+	/**
+	*Runs body for locusts 0 to n-1, on swarmPool if there is one, otherwise in order on this thread.
+	**/
+	private void forEachLocust(int n, IntConsumer body){
+		if(swarmPool == null){
+			for(int i = 0; i < n; i++){
+				body.accept(i);
+			}
+		}
+		else{
+			swarmPool.submit(() -> IntStream.range(0, n).parallel().forEach(body)).join(); //parallel streams use the pool they are started from
+		}
+	}
+	
+	/**
+	*Picks how many threads updateSwarm() uses. 1 or less means serial.
+	**/
+	public void setSwarmThreads(int threads){
+		if(swarmPool != null){
+			swarmPool.shutdown();
+		}
+		swarmPool = (threads > 1) ? new ForkJoinPool(threads) : null;
 	}
 	//=======================================================================
 	
 	
 	//=======================================================================
 	/**
-	* Generating the map. Starts by seeding it randomly with a mountain or live tile here and there,
-	* then fills in the gaps. Sets borders as mountains.
+	* Generating the map, a chunk (see TileMap) at a time. Starts by seeding it randomly with a mountain
+	* or live tile here and there, then fills in the gaps. Sets borders as mountains.
+	* A gap becomes whatever kind of seed is nearest (a Voronoi partition), ties go to alive.
+	* DistanceTransform finds the nearest seeds for every tile at once. Only seeds up to MARGIN tiles
+	* outside the chunk are looked at, which is plenty: seeds are so dense that a tile with no seed of
+	* a kind that close is a one in a billion chance.
+	* Every random number comes from the chunk's own seed (see tileRandom()), so a chunk comes out the
+	* same whenever, wherever and on whichever thread it is made, and its neighbors' seeds can be
+	* worked out without making them. Safe to call from any thread.
+	* generateMap() makes a map of the given size, every chunk generated. 0 x 0 makes an infinite map,
+	* generated later by TileMap.follow(). generateChunk() makes a chunk of a rows x cols map (0 x 0 for infinite).
 	**/
-    public Tile[][] generateMap(double x, double y){ //generates map of tiles and puts them in the map 2d array
-		
-		map = new Tile[(int)x][(int)y]; //set map dimensions
-		Random r = new Random();//randomize tile life levels with r.nextDouble()*100
+    public TileMap generateMap(double x, double y){ //generates map of tiles and puts them in the map
 		
-		int[][] seededMap = generateSeedMap(x, y); //generates seeded map
-		
-		for(int i = 0; i < map.length; i++){//fill gaps
-			for(int j = 0; j < map[0].length; j++){
-				Pair tilePos = new Pair(j, i);
-				double[] distances = getSeedDistances(seededMap, tilePos);
-				if(distances[0]<distances[1]){map[i][j] = new MountainTile(j, i, 0, this);} //if closer to a mountain than a live tile set as mountain
-				else{map[i][j] = new Tile(j, i, r.nextDouble()*100+.1, this);} //otherwise set as a live tile with random life.
-			}
+		TileMap generated = new TileMap(this, (int)x, (int)y); //set map dimensions
+		if(!generated.infinite){
+			generated.generateAll();
 		}
+		map = generated;
+		return map;
+	    
+	} //generateMap()
+	
+	public TileMap.Chunk generateChunk(int chunkRow, int chunkCol, int rows, int cols){
 		
+		int size = TileMap.CHUNK_TILES + 2*MARGIN;
+		int firstRow = chunkRow*TileMap.CHUNK_TILES - MARGIN;
+		int firstCol = chunkCol*TileMap.CHUNK_TILES - MARGIN;
+		int[][] seededMap = generateSeedMap(firstRow, firstCol, size, size); //generates seeded map, the chunk and its margin
+		double[][] toMountain = DistanceTransform.squaredDistanceTo(seededMap, 0); //squared distance of every tile to the nearest mountain seed
+		double[][] toAlive = DistanceTransform.squaredDistanceTo(seededMap, 1); //and to the nearest alive seed
 		
-		for(int i = 0; i < map.length; i++){
-			for(int j = 0; j < map[0].length; j++){
-				if(i == 0||i == map.length-1|| j == 0||j == map[0].length-1){
-					  map[i][j] = new MountainTile(j, i, 0, this);//put mountains at edges
+		TileMap.Chunk chunk = new TileMap.Chunk();
+		long chunkSeed = chunkSeed(chunkRow, chunkCol);
+		for(int i = 0; i < TileMap.CHUNK_TILES; i++){//fill gaps
+			for(int j = 0; j < TileMap.CHUNK_TILES; j++){
+				int row = chunkRow*TileMap.CHUNK_TILES + i;
+				int col = chunkCol*TileMap.CHUNK_TILES + j;
+				int tile = i*TileMap.CHUNK_TILES + j;
+				boolean edge = rows > 0 && cols > 0 && (row == 0 || row == rows-1 || col == 0 || col == cols-1);
+				if(edge || toMountain[i+MARGIN][j+MARGIN]<toAlive[i+MARGIN][j+MARGIN]){ //put mountains at edges, and if closer to a mountain than a live tile set as mountain
+					chunk.flags[tile] = TileMap.MOUNTAIN;
+					chunk.sprite[tile] = (byte)Sprites.MTN;
+				}
+				else{ //otherwise set as a live tile with random life (0.1 to 100).
+					chunk.life[tile] = (short)(1 + (int)(tileRandom(chunkSeed, tile, 1)*TileMap.MAX_LIFE));
+					chunk.flags[tile] = TileMap.ALIVE;
+					chunk.sprite[tile] = (byte)TileMap.spriteFor(chunk.life[tile]);
 				}
 			}
 		}
+		return chunk;
 		
-		return map;
-	    
-	} //generateMap()
+	} //generateChunk()
 	
-	public int[][] generateSeedMap(double x, double y){ //creates a 2d array of ints representing mountain seeds, live seeds, and undefined tiles
-		Random r = new Random();//generate seeds
+	public int[][] generateSeedMap(int firstRow, int firstCol, int rows, int cols){ //creates a 2d array of ints representing mountain seeds, live seeds, and undefined tiles
 		
-		int[][] seededMap = new int[(int)x][(int)y];
+		int[][] seededMap = new int[rows][cols];
 		double mountainOdds = 0.1; 
 		double aliveOdds = 0.2;
 		
 		for(int i = 0; i < seededMap.length; i++){ //generate seeds
 			for(int j = 0; j < seededMap[i].length; j++){
-				double rand = r.nextDouble();
+				int row = firstRow + i;
+				int col = firstCol + j;
+				int tile = ((row & (TileMap.CHUNK_TILES-1)) << TileMap.CHUNK_SHIFT) | (col & (TileMap.CHUNK_TILES-1));
+				double rand = tileRandom(chunkSeed(row >> TileMap.CHUNK_SHIFT, col >> TileMap.CHUNK_SHIFT), tile, 0);
 				if(rand < mountainOdds){seededMap[i][j] = 0;} //0=mountains   these are also the indexes for distance from that biome later
 				else if(rand>mountainOdds && rand<mountainOdds+aliveOdds){seededMap[i][j] = 1;}//1=alive
 				else{seededMap[i][j] = 2;}//2=none
@@ -181,29 +443,25 @@ class World{
 		return seededMap;
 	} //generateSeedMap()
 	
-	public double[] getSeedDistances(int[][] seededMap, Pair position){ //gets smallest distance of position to mountain and alive seeds
-		
-		double[] distances = new double[2]; // index 0 = mtn distance index 1 = alive distance
-		distances[0]=100000;
-		distances[1]=100000; //start em real high or else if there isn't a single seed of 1 type it will always be registered as 0 distance. That would be bad.
-		for(int i = 0; i < seededMap.length; i++){ 
-			for(int j = 0; j < seededMap[i].length; j++){
-				if(!(seededMap[i][j] == 2)){//if the tile is a seed and not nothing
-					double distance = Math.sqrt(Math.pow((position.x - j),2) + Math.pow((position.y - i),2));
-					if(distance==0.0){//if tile is on a seed make it that seed
-						distances[seededMap[i][j]] = 0.0;
-						distances[(seededMap[i][j]+1)%2] = 100000.0; //set the other tile type distance to an absurdly high number so it won't become that
-						return distances;
-					}
-					else if(distances[seededMap[i][j]] == 0.0 || distances[seededMap[i][j]] > distance){
-						distances[seededMap[i][j]] = distance;
-					}
-				}
-			}
-		}
-		return distances;
-		
-	} //getSeedDistances
+	/**
+	* chunkSeed() is the seed of a chunk, made from mapSeed and where the chunk is.
+	* tileRandom() is the draw-th random number (0 to 1) of tile number tile in a chunk.
+	* Both hash their inputs with the SplitMix64 finalizer instead of running a Random,
+	* so any number can be had without making the ones before it.
+	**/
+	long chunkSeed(int chunkRow, int chunkCol){
+		return mix(mapSeed ^ mix(((long)chunkRow << 32) ^ (chunkCol & 0xFFFFFFFFL)));
+	} //chunkSeed()
+	
+	static double tileRandom(long chunkSeed, int tile, int draw){
+		return (mix(chunkSeed + (tile * 2L + draw) * 0x9E3779B97F4A7C15L) >>> 11) * 0x1.0p-53;
+	} //tileRandom()
+	
+	private static long mix(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	} //mix()
 	//=======================================================================
 	
 	
@@ -0,0 +1,162 @@
+//=======================================================================
+/**
+ * This is the BenchEngine Class of the Plague! benchmarks.
+ * It implements bench.Engine with the game's own classes, see Engine for
+ * why it lives in the default package.
+ **/
+//=======================================================================
+
+
+
+//=======================================================================
+// IMPORTS
+import java.awt.Graphics;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+//=======================================================================
+
+
+
+//=======================================================================
+public class BenchEngine implements bench.Engine{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param AREA_PER_LOCUST world area each locust gets in the starting disk, about 10 locusts are in sight of each other
+	 *@param world the world being benchmarked
+	 *@param trace the input trace being replayed, as read from its file
+	 *@param replaying the headless run the trace is replayed in
+	 **/
+	static final double AREA_PER_LOCUST = 200;
+	World world;
+	byte[] trace;
+	Headless replaying;
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * setup() builds the world and replaces its starting swarm with locusts
+	 * spread evenly over a disk around the king, flying in random directions.
+	 * The grid is built so neighborhood() can be timed on its own.
+	 **/
+	public void setup(int worldSize, int locusts, long seed){
+		world = new World(new Pair(worldSize, worldSize), null, seed);
+		while(world.swarm.count > 0){
+			world.swarm.removeLast();
+		}
+		Random r = new Random(seed);
+		double radius = Math.sqrt(locusts * AREA_PER_LOCUST / Math.PI);
+		Pair king = world.kingBoid.position;
+		for(int i = 0; i < locusts; i++){
+			double distance = radius * Math.sqrt(r.nextDouble());
+			double angle = r.nextDouble() * 2 * Math.PI;
+			world.swarm.add(king.x + distance * Math.cos(angle), king.y + distance * Math.sin(angle),
+				(r.nextDouble()-.5)*10, (r.nextDouble()-.5)*10);
+		}
+		world.grid.rebuild(world.swarm.x, world.swarm.y, world.swarm.count);
+	}// setup ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * The measured work, see Engine.
+	 **/
+	public void neighborhood(){
+		for(int i = 0; i < world.swarm.count; i++){
+			Locust.neighborhood(world.swarm, world.grid, i);
+		}
+	}// neighborhood ()
+
+	public void flock(){
+		world.grid.rebuild(world.swarm.x, world.swarm.y, world.swarm.count);
+		for(int i = 0; i < world.swarm.count; i++){
+			Locust.flock(world.swarm, world.grid, world.kingBoid, i);
+		}
+	}// flock ()
+
+	public Object generateMap(int worldSize){
+		return world.generateMap(worldSize, worldSize);
+	}// generateMap ()
+
+	public Object openMap(String path, int worldSize){
+		try{
+			TileFile tileFile = TileFile.open(path, false);
+			World opened = new World(new Pair(worldSize, worldSize), null, world.seed, tileFile);
+			tileFile.close(opened); //the mapping stays valid
+			return opened.map;
+		}
+		catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}// openMap ()
+
+	public void drawTiles(Graphics g){
+		world.drawTiles(g, null);
+	}// drawTiles ()
+
+	public void drawBoids(Graphics g){
+		world.drawBoids(g, null);
+	}// drawBoids ()
+
+	public int percentAlive(){
+		return world.getPercentAlive();
+	}// percentAlive ()
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Replays, see Engine. The scripted trace is recorded on a 100 x 100
+	 * world with seed 42.
+	 **/
+	public void loadReplay(String tracePath, int ticks){
+		try{
+			if(tracePath.isEmpty()){
+				Headless script = new Headless(new Pair(100, 100), new Pair(100, 100), 42, 1);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				script.recording = InputTrace.record(out, script.world, Main.FPS);
+				script.run(ticks);
+				script.recording.close();
+				trace = out.toByteArray();
+			}
+			else{
+				trace = Files.readAllBytes(Paths.get(tracePath));
+			}
+		}
+		catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}// loadReplay ()
+
+	public void resetReplay(){
+		try{
+			InputTrace replay = InputTrace.replay(new ByteArrayInputStream(trace));
+			replaying = new Headless(new Pair(replay.worldRows, replay.worldCols), new Pair(100, 100), replay.seed, 1);
+			replaying.replay = replay;
+		}
+		catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}// resetReplay ()
+
+	public int replay(){
+		try{
+			return replaying.run(Integer.MAX_VALUE);
+		}
+		catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}// replay ()
+	//=======================================================================
+
+}// class BenchEngine
+//=======================================================================
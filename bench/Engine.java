@@ -0,0 +1,96 @@
+//=======================================================================
+/**
+ * This is the Engine interface of the Plague! benchmarks.
+ * The game's classes are in the default package, and JMH only runs
+ * benchmarks that are in a package, which can't see the default package.
+ * So the benchmarks (package bench) do all their work through this
+ * interface, and BenchEngine (default package, in this folder) implements
+ * it on top of the game's classes. The benchmarks load the implementation by
+ * name once, in their setup, so timed calls are plain interface calls.
+ *
+ * Another implementation can be benchmarked against BenchEngine by passing
+ * its class name: java -jar target/benchmarks.jar -p engine=MyEngine
+ **/
+//=======================================================================
+package bench;
+
+
+
+//=======================================================================
+// IMPORTS
+import java.awt.Graphics;
+//=======================================================================
+
+
+
+//=======================================================================
+public interface Engine{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * setup() builds a worldSize x worldSize world and puts locusts locusts
+	 * in a disk around the king, placed with the given seed.
+	 **/
+	void setup(int worldSize, int locusts, long seed);
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Work measured by the benchmarks. neighborhood() and flock() run over
+	 * the whole swarm, they only write the swarm's back velocity buffer so
+	 * the swarm is the same after every call.
+	 * openMap() opens the worldSize x worldSize map of setup()'s seed kept in
+	 * the tile file at path, making the file the first time. Tiles changed in
+	 * it aren't written back, so every call (and every run) opens the same map.
+	 **/
+	void neighborhood();
+
+	void flock();
+
+	Object generateMap(int worldSize);
+
+	Object openMap(String path, int worldSize);
+
+	void drawTiles(Graphics g);
+
+	void drawBoids(Graphics g);
+
+	int percentAlive();
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * Replays of recorded input (see InputTrace) as workloads.
+	 * loadReplay() reads the trace at tracePath into memory, an empty path
+	 * records the headless king's scripted path for ticks ticks instead.
+	 * resetReplay() builds the trace's world again. replay() plays the whole
+	 * trace through it and returns the number of ticks run.
+	 **/
+	void loadReplay(String tracePath, int ticks);
+
+	void resetReplay();
+
+	int replay();
+	//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 * load() creates the engine with the given class name.
+	 **/
+	static Engine load(String className){
+		try{
+			return (Engine)Class.forName(className).getDeclaredConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException e){
+			throw new IllegalStateException("Could not load engine " + className, e);
+		}
+	}// load ()
+	//=======================================================================
+
+}// interface Engine
+//=======================================================================
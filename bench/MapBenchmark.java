@@ -0,0 +1,80 @@
+//=======================================================================
+/**
+ * This is the MapBenchmark Class of the Plague! benchmarks.
+ * Times World.generateMap() for a few world sizes (in tiles per side), and
+ * opening the same map from a tile file (see TileFile) instead. The tile
+ * files are kept in the temp folder and shared by every run, only the first
+ * run makes them.
+ **/
+//=======================================================================
+package bench;
+
+
+
+//=======================================================================
+// IMPORTS
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+//=======================================================================
+
+
+
+//=======================================================================
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MapBenchmark{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param engine class name of the Engine to benchmark
+	 *@param size width and height of the generated map in tiles
+	 *@param mapPath tile file of the map
+	 **/
+	@Param({"BenchEngine"})
+	public String engine;
+
+	@Param({"100", "500", "1000"})
+	public int size;
+
+	Engine game;
+	String mapPath;
+	//=======================================================================
+
+
+	@Setup
+	public void setup(){
+		game = Engine.load(engine);
+		game.setup(10, 0, 42);
+		mapPath = new File(System.getProperty("java.io.tmpdir"), "locustking-bench-" + size + ".map").getPath();
+		game.openMap(mapPath, size); //makes the file if there isn't one yet
+	}// setup ()
+
+	@Benchmark
+	public Object generateMap(){
+		return game.generateMap(size);
+	}// generateMap ()
+
+	@Benchmark
+	public Object openMap(){
+		return game.openMap(mapPath, size);
+	}// openMap ()
+
+}// class MapBenchmark
+//=======================================================================
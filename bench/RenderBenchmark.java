@@ -0,0 +1,98 @@
+//=======================================================================
+/**
+ * This is the RenderBenchmark Class of the Plague! benchmarks.
+ * Times World.drawTiles() and World.drawBoids() into an off-screen image the
+ * size of the game window, and World.getPercentAlive() which the HUD calls
+ * every frame.
+ **/
+//=======================================================================
+package bench;
+
+
+
+//=======================================================================
+// IMPORTS
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+//=======================================================================
+
+
+
+//=======================================================================
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param WIDTH width of the frame, same as Main.WIDTH
+	 *@param HEIGHT height of the frame, same as Main.HEIGHT
+	 *@param engine class name of the Engine to benchmark
+	 *@param locusts number of locusts drawn by drawBoids
+	 *@param frame the off-screen image drawn into
+	 *@param g graphics of frame
+	 **/
+	static final int WIDTH = 1024;
+	static final int HEIGHT = 768;
+
+	@Param({"BenchEngine"})
+	public String engine;
+
+	@Param({"1000"})
+	public int locusts;
+
+	Engine game;
+	BufferedImage frame;
+	Graphics2D g;
+	//=======================================================================
+
+
+	@Setup
+	public void setup(){
+		game = Engine.load(engine);
+		game.setup(100, locusts, 42);
+		frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		g = frame.createGraphics();
+	}// setup ()
+
+	@TearDown
+	public void tearDown(){
+		g.dispose();
+	}// tearDown ()
+
+	@Benchmark
+	public void drawTiles(){
+		game.drawTiles(g);
+	}// drawTiles ()
+
+	@Benchmark
+	public void drawBoids(){
+		game.drawBoids(g);
+	}// drawBoids ()
+
+	@Benchmark
+	public int getPercentAlive(){
+		return game.percentAlive();
+	}// getPercentAlive ()
+
+}// class RenderBenchmark
+//=======================================================================
@@ -0,0 +1,81 @@
+//=======================================================================
+/**
+ * This is the ReplayBenchmark Class of the Plague! benchmarks.
+ * Times replaying a recorded game (an InputTrace) from start to end, so a
+ * slow moment a player ran into can be kept as a workload. Record one with
+ * java Main -record FILE, then run
+ * java -jar target/benchmarks.jar Replay -p trace=FILE
+ * Without a trace it replays the headless king's scripted path.
+ **/
+//=======================================================================
+package bench;
+
+
+
+//=======================================================================
+// IMPORTS
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+//=======================================================================
+
+
+
+//=======================================================================
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ReplayBenchmark{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param engine class name of the Engine to benchmark
+	 *@param trace file of the trace to replay, empty for the scripted path
+	 *@param ticks length of the scripted path in ticks
+	 **/
+	@Param({"BenchEngine"})
+	public String engine;
+
+	@Param({""})
+	public String trace;
+
+	@Param({"3600"})
+	public int ticks;
+
+	Engine game;
+	//=======================================================================
+
+
+	@Setup(Level.Trial)
+	public void load(){
+		game = Engine.load(engine);
+		game.loadReplay(trace, ticks);
+	}// load ()
+
+	@Setup(Level.Iteration)
+	public void reset(){
+		game.resetReplay(); //every replay starts from a new world, made outside the timing
+	}// reset ()
+
+	@Benchmark
+	public int replay(){
+		return game.replay();
+	}// replay ()
+
+}// class ReplayBenchmark
+//=======================================================================
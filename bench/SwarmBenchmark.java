@@ -0,0 +1,73 @@
+//=======================================================================
+/**
+ * This is the SwarmBenchmark Class of the Plague! benchmarks.
+ * Times one pass of Locust.neighborhood() and of Locust.flock() (with the
+ * grid rebuild it needs) over the whole swarm, for a few swarm sizes.
+ **/
+//=======================================================================
+package bench;
+
+
+
+//=======================================================================
+// IMPORTS
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+//=======================================================================
+
+
+
+//=======================================================================
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SwarmBenchmark{
+//=======================================================================
+
+
+	//=======================================================================
+	/**
+	 *@param engine class name of the Engine to benchmark
+	 *@param locusts number of locusts in the swarm
+	 **/
+	@Param({"BenchEngine"})
+	public String engine;
+
+	@Param({"100", "1000", "10000"})
+	public int locusts;
+
+	Engine game;
+	//=======================================================================
+
+
+	@Setup
+	public void setup(){
+		game = Engine.load(engine);
+		game.setup(100, locusts, 42);
+	}// setup ()
+
+	@Benchmark
+	public void neighborhood(){
+		game.neighborhood();
+	}// neighborhood ()
+
+	@Benchmark
+	public void flock(){
+		game.flock();
+	}// flock ()
+
+}// class SwarmBenchmark
+//=======================================================================